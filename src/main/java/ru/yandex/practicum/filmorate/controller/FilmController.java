@@ -1,23 +1,70 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.dto.FilmDto;
 import ru.yandex.practicum.filmorate.dto.mappers.FilmMapper;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeEventResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.PopularityReport;
+import ru.yandex.practicum.filmorate.model.Projection;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @AllArgsConstructor
 @RequestMapping("/films")
 public class FilmController {
+    // RFC 7240: клиент сам просит короткий ответ вместо всего фильма со списком лайков
+    private static final String PREFER_MINIMAL = "return=minimal";
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping
-    public Collection<Film> getAllFilms() {
-        return filmService.getAllFilms();
+    public Collection<?> getAllFilms(@RequestParam(required = false) Long after,
+                                     @RequestParam(required = false) Integer limit,
+                                     @RequestParam(defaultValue = "full") String projection) {
+        Collection<Film> films = filmService.getAllFilms(after, limit, projection);
+        if (Projection.parse(projection) == Projection.SUMMARY) {
+            return films.stream()
+                    .map(FilmMapper::mapToFilmDto)
+                    .toList();
+        }
+        return films;
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportFilms() {
+        ObjectWriter writer = objectMapper.writerFor(Film.class);
+        Runnable release = filmService.reserveExport();
+        StreamingResponseBody body = out -> {
+            try {
+                filmService.exportFilms(film -> {
+                    try {
+                        out.write(writer.writeValueAsBytes(film));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } finally {
+                release.run();
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
     }
 
     @GetMapping("/{id}")
@@ -31,6 +78,14 @@ public class FilmController {
         return filmService.createFilm(film);
     }
 
+    @PostMapping("/batch")
+    public List<Long> createFilms(@RequestBody List<FilmDto> filmDtos) {
+        List<Film> films = filmDtos.stream()
+                .map(FilmMapper::mapToFilm)
+                .toList();
+        return filmService.createFilms(films);
+    }
+
     @PutMapping
     public Film updateFilm(@RequestBody FilmDto filmDto) {
         Film film = FilmMapper.mapToFilm(filmDto);
@@ -38,17 +93,55 @@ public class FilmController {
     }
 
     @PutMapping("/{id}/like/{userId}")
-    public Film userLikesFilm(@PathVariable("id") Long id, @PathVariable("userId") Long userId) {
-        return filmService.userLikesFilm(id, userId);
+    public ResponseEntity<?> userLikesFilm(@PathVariable("id") Long id, @PathVariable("userId") Long userId,
+                                           @RequestHeader(value = "Prefer", required = false) List<String> prefer) {
+        if (prefersMinimal(prefer)) {
+            return minimal(filmService.addLike(id, userId));
+        }
+        return ResponseEntity.ok(filmService.userLikesFilm(id, userId));
     }
 
     @DeleteMapping("/{id}/like/{userId}")
-    public Film deleteLikesFilm(@PathVariable("id") Long id, @PathVariable("userId") Long userId) {
-        return filmService.deleteLikesFilm(id, userId);
+    public ResponseEntity<?> deleteLikesFilm(@PathVariable("id") Long id, @PathVariable("userId") Long userId,
+                                             @RequestHeader(value = "Prefer", required = false) List<String> prefer) {
+        if (prefersMinimal(prefer)) {
+            return minimal(filmService.removeLike(id, userId));
+        }
+        return ResponseEntity.ok(filmService.deleteLikesFilm(id, userId));
+    }
+
+    @PostMapping("/likes/batch")
+    public List<LikeEventResult> applyLikeEvents(@RequestBody List<LikeEvent> events) {
+        return filmService.applyLikeEvents(events);
     }
 
     @GetMapping("/popular")
     public Collection<Film> listFirstCountFilm(@RequestParam(defaultValue = "10") int count) {
         return filmService.listFirstCountFilm(count);
     }
+
+    @GetMapping("/popular/check")
+    public PopularityReport checkPopularity(@RequestParam(defaultValue = "false") boolean repair) {
+        return filmService.checkPopularity(repair);
+    }
+
+    // Prefer бывает списком через запятую и с параметрами после ';': "respond-async, return=minimal; foo=bar"
+    private static boolean prefersMinimal(List<String> prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String value : prefer) {
+            for (String token : value.split(",")) {
+                String preference = token.split(";", 2)[0].replace(" ", "");
+                if (preference.equalsIgnoreCase(PREFER_MINIMAL)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private ResponseEntity<LikeStatus> minimal(LikeStatus status) {
+        return ResponseEntity.ok().header("Preference-Applied", PREFER_MINIMAL).body(status);
+    }
 }
@@ -4,7 +4,7 @@ import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.dto.UserDto;
 import ru.yandex.practicum.filmorate.dto.mappers.UserMapper;
-import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Projection;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
@@ -18,8 +18,16 @@ public class UserController {
     private final UserMapper userMapper;
 
     @GetMapping
-    public Collection<User> getAllUsers() {
-        return userService.getAllUsers();
+    public Collection<?> getAllUsers(@RequestParam(required = false) Long after,
+                                     @RequestParam(required = false) Integer limit,
+                                     @RequestParam(defaultValue = "full") String projection) {
+        Collection<User> users = userService.getAllUsers(after, limit, projection);
+        if (Projection.parse(projection) == Projection.SUMMARY) {
+            return users.stream()
+                    .map(UserMapper::mapToUserDto)
+                    .toList();
+        }
+        return users;
     }
 
     @GetMapping("/{id}")
@@ -51,9 +59,6 @@ public class UserController {
 
     @GetMapping("/{id}/friends")
     public Collection<User> listFriends(@PathVariable("id") long id) {
-        if (userService.listOfFriends(id) == null) {
-            throw new NotFoundException("Такого юзера нет в списке!");
-        }
         return userService.listOfFriends(id);
     }
 
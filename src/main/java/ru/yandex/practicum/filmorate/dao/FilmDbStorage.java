@@ -2,58 +2,116 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.dao.mappers.FilmRowMapper;
-import ru.yandex.practicum.filmorate.dao.mappers.GenreRowMapper;
 import ru.yandex.practicum.filmorate.exception.DatabaseException;
 import ru.yandex.practicum.filmorate.exception.DuplicateException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeEventResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.PopularityReport;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.RatingStorage;
 
+import java.sql.*;
 import java.sql.Date;
-import java.sql.PreparedStatement;
-import java.sql.Statement;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Repository
 @RequiredArgsConstructor
-@Qualifier("filmDbStorage")
+@Profile("!in-memory")
+@Qualifier("filmStorage")
 public class FilmDbStorage implements FilmStorage {
     private final JdbcTemplate jdbcTemplate;
     private final UserDbStorage userDbStorage;
+    private final GenreStorage genreStorage;
+    private final RatingStorage ratingStorage;
+    private final FilmHydrator hydrator;
 
     private static final String CREATE_QUERY =
             "INSERT INTO films (name,description,releaseDate,duration) VALUES (?,?,?,?)";
     private static final String UPDATE_QUERY =
             "UPDATE films SET name = ?, description = ?, releaseDate = ?, duration = ? WHERE id = ?";
+    // Названия жанров и рейтингов берём из кэша справочников, а не из join
     private static final String GET_ID_QUERY =
-            "SELECT f.*, r.id AS rating_id, r.name AS rating_name " +
+            "SELECT f.*, fr.rating_id " +
                     "FROM films f " +
                     "LEFT JOIN films_rating fr ON f.id = fr.films_id " +
-                    "LEFT JOIN rating r ON r.id = fr.rating_id " +
                     "WHERE f.id = ?";
-    private static final String GET_ALL_QUERY =
-            "SELECT f.*, r.id AS rating_id, r.name AS rating_name " +
+    private static final String SELECT_FILMS =
+            "SELECT f.*, fr.rating_id " +
                     "FROM films f " +
-                    "LEFT JOIN films_rating fr ON f.id = fr.films_id " +
-                    "LEFT JOIN rating r ON r.id = fr.rating_id";
+                    "LEFT JOIN films_rating fr ON f.id = fr.films_id";
+    // Порядок по id, как у хранилища в памяти и у выгрузки курсорами
+    private static final String GET_ALL_QUERY = SELECT_FILMS + " ORDER BY f.id";
     private static final String INSERT_FILM_RATINGS_BY_ID_QUERY =
             "INSERT INTO films_rating (films_id, rating_id) VALUES (?, ?)";
     private static final String INSERT_FILM_GENRES_QUERY =
             "INSERT INTO films_genre (films_id, genre_id) VALUES (?, ?)";
     private static final String INSERT_FILM_LIKES_QUERY =
             "INSERT INTO films_likes (films_id, users_id) VALUES (?, ?)";
+    private static final String INSERT_FILM_LIKE_IF_ABSENT_QUERY =
+            "INSERT INTO films_likes (films_id, users_id) SELECT ?, ? " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM films_likes WHERE films_id = ? AND users_id = ?)";
     private static final String DELETE_FILM_LIKES_BY_ID_QUERY =
             "DELETE FROM films_likes WHERE films_id=? AND users_id=?";
-
+    private static final String GET_GENRES_BY_FILM_QUERY =
+            "SELECT genre_id FROM films_genre WHERE films_id = ? ORDER BY genre_id";
+    private static final String GET_LIKES_BY_FILM_QUERY =
+            "SELECT users_id FROM films_likes WHERE films_id = ?";
+    private static final String GET_ALL_GENRES_QUERY =
+            "SELECT films_id, genre_id FROM films_genre ORDER BY films_id, genre_id";
+    private static final String GET_ALL_LIKES_QUERY =
+            "SELECT films_id, users_id FROM films_likes";
+    private static final String GET_BY_IDS_QUERY = SELECT_FILMS + " WHERE f.id IN (%s)";
+    private static final String GET_PAGE_QUERY = SELECT_FILMS + " WHERE f.id > ? ORDER BY f.id LIMIT ?";
+    private static final String EXPORT_LIKES_QUERY =
+            "SELECT films_id, users_id FROM films_likes ORDER BY films_id, users_id";
+    private static final int EXPORT_FETCH_SIZE = 500;
+    private static final int MAX_IN_LIST = 1000;
+    private static final String GET_GENRES_BY_FILMS_QUERY =
+            "SELECT films_id, genre_id FROM films_genre WHERE films_id IN (%s) ORDER BY films_id, genre_id";
+    private static final String GET_LIKES_BY_FILMS_QUERY =
+            "SELECT films_id, users_id FROM films_likes WHERE films_id IN (%s)";
+    private static final String TOP_POPULAR_QUERY = SELECT_FILMS + " ORDER BY f.like_count DESC, f.id LIMIT ?";
+    private static final String ADD_LIKE_COUNT_QUERY = "UPDATE films SET like_count = like_count + ? WHERE id = ?";
+    private static final String EXISTING_IDS_QUERY = "SELECT id FROM films WHERE id IN (%s)";
+    private static final String LIKES_BY_PAIRS_QUERY =
+            "SELECT films_id, users_id FROM films_likes WHERE films_id IN (%s) AND users_id IN (%s)";
+    private static final String GET_LIKE_COUNT_QUERY = "SELECT like_count FROM films WHERE id = ?";
+    private static final String GET_LIKE_COUNTS_QUERY = "SELECT id, like_count FROM films WHERE id IN (%s)";
+    private static final String EXISTS_QUERY = "SELECT COUNT(*) FROM films WHERE id = ?";
+    private static final String HAS_LIKE_QUERY = "SELECT COUNT(*) FROM films_likes WHERE films_id = ? AND users_id = ?";
+    private static final String COUNT_FILMS_QUERY = "SELECT COUNT(*) FROM films";
+    private static final String LIKE_COUNT_MISMATCH_QUERY =
+            "SELECT f.id, f.like_count, COUNT(fl.users_id) AS likes " +
+                    "FROM films f " +
+                    "LEFT JOIN films_likes fl ON fl.films_id = f.id " +
+                    "GROUP BY f.id, f.like_count " +
+                    "HAVING f.like_count <> COUNT(fl.users_id) " +
+                    "ORDER BY f.id";
+    private static final String RECOUNT_LIKES_QUERY =
+            "UPDATE films f SET like_count = (SELECT COUNT(*) FROM films_likes fl WHERE fl.films_id = f.id) " +
+                    "WHERE f.id = ?";
 
     @Override
     public Film getFilmById(Long id) {
@@ -64,6 +122,7 @@ public class FilmDbStorage implements FilmStorage {
             throw new DatabaseException("Такого фильма не существует! " + e.getMessage());
         }
 
+        resolveMpa(film);
         film.setGenres(loadGenres(id));
         film.setLikes(loadLikes(id));
 
@@ -72,21 +131,277 @@ public class FilmDbStorage implements FilmStorage {
 
     @Override
     public Collection<Film> getAllFilms() {
+        // Собираем фильмы за три запроса вместо 1 + 2N
         List<Film> films = jdbcTemplate.query(GET_ALL_QUERY, new FilmRowMapper());
+        return new ArrayList<>(assembleFilms(films, GET_ALL_GENRES_QUERY, GET_ALL_LIKES_QUERY).values());
+    }
 
-        for (Film f : films) {
-            f.setGenres(loadGenres(f.getId()));
-            f.setLikes(loadLikes(f.getId()));
+    @Override
+    public Collection<Film> getFilmsByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
         }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        Object[] args = ids.toArray();
+        List<Film> rows = jdbcTemplate.query(GET_BY_IDS_QUERY.formatted(placeholders), new FilmRowMapper(), args);
+        Map<Long, Film> films = assembleFilms(rows,
+                GET_GENRES_BY_FILMS_QUERY.formatted(placeholders),
+                GET_LIKES_BY_FILMS_QUERY.formatted(placeholders),
+                args);
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
 
-        return films;
+    @Override
+    public Collection<Film> getFilmsPage(long afterId, int limit, boolean withLikes) {
+        List<Film> rows = jdbcTemplate.query(GET_PAGE_QUERY, new FilmRowMapper(), afterId, limit);
+        if (rows.isEmpty()) {
+            return rows;
+        }
+        if (rows.size() > MAX_IN_LIST) {
+            // Страница без предела — весь каталог: вместо IN на тысячи параметров проходим связующие таблицы целиком
+            return new ArrayList<>(assembleFilms(rows, GET_ALL_GENRES_QUERY,
+                    withLikes ? GET_ALL_LIKES_QUERY : null).values());
+        }
+        String placeholders = String.join(",", Collections.nCopies(rows.size(), "?"));
+        Object[] args = rows.stream().map(Film::getId).toArray();
+        return new ArrayList<>(assembleFilms(rows,
+                GET_GENRES_BY_FILMS_QUERY.formatted(placeholders),
+                withLikes ? GET_LIKES_BY_FILMS_QUERY.formatted(placeholders) : null,
+                args).values());
     }
 
     @Override
-    public Film createFilm(Film film) {
-        if (film.getReleaseDate() != null && film.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
-            throw new ValidationException("Дата релиза — не раньше 28 декабря 1895 года!");
+    public void forEachFilm(Consumer<Film> consumer) {
+        // Три курсора, упорядоченных по id фильма, идут параллельно, как при сортировке слиянием:
+        // в памяти одновременно только один фильм с его жанрами и лайками
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement filmsStmt = openCursor(connection, GET_ALL_QUERY);
+                 PreparedStatement genresStmt = openCursor(connection, GET_ALL_GENRES_QUERY);
+                 PreparedStatement likesStmt = openCursor(connection, EXPORT_LIKES_QUERY);
+                 ResultSet films = filmsStmt.executeQuery();
+                 ResultSet genres = genresStmt.executeQuery();
+                 ResultSet likes = likesStmt.executeQuery()) {
+                FilmRowMapper mapper = new FilmRowMapper();
+                boolean hasGenre = genres.next();
+                boolean hasLike = likes.next();
+                int rowNum = 0;
+                while (films.next()) {
+                    Film film = mapper.mapRow(films, rowNum++);
+                    long filmId = film.getId();
+                    resolveMpa(film);
+
+                    Set<Genre> filmGenres = new LinkedHashSet<>();
+                    while (hasGenre && genres.getLong("films_id") <= filmId) {
+                        if (genres.getLong("films_id") == filmId) {
+                            filmGenres.add(genreStorage.getGenreById(genres.getLong("genre_id")));
+                        }
+                        hasGenre = genres.next();
+                    }
+                    film.setGenres(filmGenres);
+
+                    LongHashSet filmLikes = new LongHashSet();
+                    while (hasLike && likes.getLong("films_id") <= filmId) {
+                        if (likes.getLong("films_id") == filmId) {
+                            filmLikes.add(likes.getLong("users_id"));
+                        }
+                        hasLike = likes.next();
+                    }
+                    film.setLikes(filmLikes);
+
+                    consumer.accept(film);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    @Transactional
+    public LikeStatus addLike(Long id, Long userId) {
+        // Существование фильма и пользователя проверяют внешние ключи films_likes, отдельных select нет
+        try {
+            jdbcTemplate.update(INSERT_FILM_LIKES_QUERY, id, userId);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateException("Пользователь уже поставил лайк этому фильму!");
+        } catch (DataIntegrityViolationException e) {
+            throw missingFilmOrUser(id, userId);
+        }
+        jdbcTemplate.update(ADD_LIKE_COUNT_QUERY, 1, id);
+        return new LikeStatus(id, userId, true, getLikeCount(id));
+    }
+
+    @Override
+    @Transactional
+    public LikeStatus removeLike(Long id, Long userId) {
+        int deleted = jdbcTemplate.update(DELETE_FILM_LIKES_BY_ID_QUERY, id, userId);
+        if (deleted > 0) {
+            jdbcTemplate.update(ADD_LIKE_COUNT_QUERY, -deleted, id);
+        } else if (getExistingIds(List.of(id)).isEmpty() || !userDbStorage.existsById(userId)) {
+            // Удалять было нечего — только тогда выясняем, существуют ли фильм и пользователь
+            throw missingFilmOrUser(id, userId);
+        }
+        return new LikeStatus(id, userId, false, getLikeCount(id));
+    }
+
+    @Override
+    @Transactional
+    public List<LikeEventResult> applyLikeEvents(List<LikeEvent> events) {
+        Set<Long> filmIds = new HashSet<>();
+        Set<Long> userIds = new HashSet<>();
+        for (LikeEvent event : events) {
+            if (event.getFilmId() != null && event.getUserId() != null) {
+                filmIds.add(event.getFilmId());
+                userIds.add(event.getUserId());
+            }
         }
+        Set<Long> existingFilms = getExistingIds(filmIds);
+        Set<Long> existingUsers = userDbStorage.getExistingIds(userIds);
+        Set<LikePair> initial = loadLikePairs(existingFilms, existingUsers);
+
+        // Проигрываем события по порядку в памяти, в базу пишем только итоговую разницу
+        Set<LikePair> current = new HashSet<>(initial);
+        List<LikeEventResult> results = new ArrayList<>(events.size());
+        // Для каждой пары — последнее применённое событие: его статус поправим, если запись в базу не прошла
+        Map<LikePair, LikeEventResult> lastApplied = new HashMap<>();
+        for (int i = 0; i < events.size(); i++) {
+            LikeEvent event = events.get(i);
+            LikeEventResult.Status status;
+            LikePair pair = null;
+            if (event.getFilmId() == null || event.getUserId() == null || event.getOp() == null) {
+                status = LikeEventResult.Status.INVALID;
+            } else if (!existingFilms.contains(event.getFilmId())) {
+                status = LikeEventResult.Status.FILM_NOT_FOUND;
+            } else if (!existingUsers.contains(event.getUserId())) {
+                status = LikeEventResult.Status.USER_NOT_FOUND;
+            } else {
+                pair = new LikePair(event.getFilmId(), event.getUserId());
+                if (event.getOp() == LikeEvent.Op.LIKE) {
+                    status = current.add(pair) ? LikeEventResult.Status.APPLIED : LikeEventResult.Status.DUPLICATE;
+                } else {
+                    status = current.remove(pair) ? LikeEventResult.Status.APPLIED : LikeEventResult.Status.NOT_LIKED;
+                }
+            }
+            LikeEventResult result = new LikeEventResult(i, event.getFilmId(), event.getUserId(), status);
+            if (result.isApplied()) {
+                lastApplied.put(pair, result);
+            }
+            results.add(result);
+        }
+
+        List<LikePair> inserts = new ArrayList<>();
+        List<LikePair> deletes = new ArrayList<>();
+        for (LikePair pair : current) {
+            if (!initial.contains(pair)) {
+                inserts.add(pair);
+            }
+        }
+        for (LikePair pair : initial) {
+            if (!current.contains(pair)) {
+                deletes.add(pair);
+            }
+        }
+
+        // Между чтением пар и записью их могли поменять параллельно. Вставка пропускает уже стоящий лайк,
+        // удаление — уже снятый, и счётчики строятся только по тем строкам, которые база действительно изменила
+        Map<Long, Long> deltas = new HashMap<>();
+        int[] inserted = insertLikesIfAbsent(inserts);
+        for (int i = 0; i < inserts.size(); i++) {
+            LikePair pair = inserts.get(i);
+            if (changed(inserted[i])) {
+                deltas.merge(pair.filmId(), 1L, Long::sum);
+            } else {
+                lastApplied.get(pair).setStatus(LikeEventResult.Status.DUPLICATE);
+            }
+        }
+        int[] deleted = deletes.isEmpty() ? new int[0] : jdbcTemplate.batchUpdate(DELETE_FILM_LIKES_BY_ID_QUERY,
+                deletes.stream().map(pair -> new Object[]{pair.filmId(), pair.userId()}).toList());
+        for (int i = 0; i < deletes.size(); i++) {
+            LikePair pair = deletes.get(i);
+            if (changed(deleted[i])) {
+                deltas.merge(pair.filmId(), -1L, Long::sum);
+            } else {
+                lastApplied.get(pair).setStatus(LikeEventResult.Status.NOT_LIKED);
+            }
+        }
+
+        List<Object[]> counts = deltas.entrySet().stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(entry -> new Object[]{entry.getValue(), entry.getKey()})
+                .toList();
+        if (!counts.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADD_LIKE_COUNT_QUERY, counts);
+        }
+        return results;
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        Integer count = jdbcTemplate.queryForObject(EXISTS_QUERY, Integer.class, id);
+        return count != null && count > 0;
+    }
+
+    @Override
+    public boolean hasLike(Long id, Long userId) {
+        // Поиск по первичному ключу films_likes, фильм целиком не собираем
+        Integer found = jdbcTemplate.queryForObject(HAS_LIKE_QUERY, Integer.class, id, userId);
+        return found != null && found > 0;
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts(List<Long> ids) {
+        Map<Long, Long> counts = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += MAX_IN_LIST) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IN_LIST));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query(GET_LIKE_COUNTS_QUERY.formatted(placeholders),
+                    (RowCallbackHandler) rs -> counts.put(rs.getLong("id"), rs.getLong("like_count")), chunk.toArray());
+        }
+        return counts;
+    }
+
+    @Override
+    public Collection<Film> topPopular(int count) {
+        List<Film> rows = jdbcTemplate.query(TOP_POPULAR_QUERY, new FilmRowMapper(), count);
+        if (rows.isEmpty()) {
+            return rows;
+        }
+        String placeholders = String.join(",", Collections.nCopies(rows.size(), "?"));
+        Object[] args = rows.stream().map(Film::getId).toArray();
+        return new ArrayList<>(assembleFilms(rows,
+                GET_GENRES_BY_FILMS_QUERY.formatted(placeholders),
+                GET_LIKES_BY_FILMS_QUERY.formatted(placeholders),
+                args).values());
+    }
+
+    @Override
+    @Transactional
+    public PopularityReport checkPopularity(boolean repair) {
+        Integer checked = jdbcTemplate.queryForObject(COUNT_FILMS_QUERY, Integer.class);
+        List<PopularityReport.Mismatch> mismatches = jdbcTemplate.query(LIKE_COUNT_MISMATCH_QUERY, (rs, rowNum) ->
+                new PopularityReport.Mismatch(rs.getLong("id"), rs.getLong("like_count"), rs.getLong("likes")));
+
+        boolean repaired = false;
+        if (repair && !mismatches.isEmpty()) {
+            List<Object[]> batch = mismatches.stream()
+                    .map(m -> new Object[]{m.getFilmId()})
+                    .toList();
+            jdbcTemplate.batchUpdate(RECOUNT_LIKES_QUERY, batch);
+            repaired = true;
+        }
+        return PopularityReport.builder()
+                .checked(checked == null ? 0 : checked)
+                .consistent(mismatches.isEmpty())
+                .repaired(repaired)
+                .mismatches(mismatches)
+                .build();
+    }
+
+    @Override
+    public Film createFilm(Film film) {
+        checkReleaseDate(film);
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
         jdbcTemplate.update(connection -> {
@@ -129,6 +444,69 @@ public class FilmDbStorage implements FilmStorage {
         return getFilmById(film.getId());
     }
 
+    @Override
+    @Transactional
+    public List<Long> createFilms(List<Film> films) {
+        for (Film film : films) {
+            checkReleaseDate(film);
+        }
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(CREATE_QUERY, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement stmt, int i) throws SQLException {
+                        Film film = films.get(i);
+                        stmt.setString(1, film.getName());
+                        stmt.setString(2, film.getDescription());
+                        stmt.setDate(3, Date.valueOf(film.getReleaseDate()));
+                        stmt.setInt(4, film.getDuration());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != films.size()) {
+            throw new DatabaseException("Не удалось получить id всех добавленных фильмов!");
+        }
+        List<Long> ids = new ArrayList<>(films.size());
+        List<Object[]> genres = new ArrayList<>();
+        List<Object[]> ratings = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            Long id = ((Number) keys.get(i).values().iterator().next()).longValue();
+            film.setId(id);
+            ids.add(id);
+            if (film.getGenres() != null) {
+                film.getGenres().stream()
+                        .map(Genre::getId)
+                        .distinct()
+                        .forEach(genreId -> genres.add(new Object[]{id, genreId}));
+            }
+            if (film.getMpa() != null) {
+                ratings.add(new Object[]{id, film.getMpa().getId()});
+            }
+        }
+
+        try {
+            if (!genres.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_FILM_GENRES_QUERY, genres);
+            }
+            if (!ratings.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_FILM_RATINGS_BY_ID_QUERY, ratings);
+            }
+        } catch (DataAccessException e) {
+            throw new DatabaseException("Ошибка при сохранении жанров и рейтингов: " + e.getMessage());
+        }
+        return ids;
+    }
+
     @Override
     public Film updateFilm(Film film) {
         try {
@@ -149,6 +527,7 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     @Override
+    @Transactional
     public Film userLikesFilm(Long id, Long userId) {
         getFilmById(id);
         userDbStorage.getUserById(userId);
@@ -157,33 +536,168 @@ public class FilmDbStorage implements FilmStorage {
         } catch (DataAccessException e) {
             throw new DuplicateException(e.getMessage());
         }
+        jdbcTemplate.update(ADD_LIKE_COUNT_QUERY, 1, id);
         return getFilmById(id);
     }
 
     @Override
+    @Transactional
     public Film deleteLikesFilm(Long id, Long userId) {
         getFilmById(id);
         userDbStorage.getUserById(userId);
-        jdbcTemplate.update(DELETE_FILM_LIKES_BY_ID_QUERY, id, userId);
+        int deleted = jdbcTemplate.update(DELETE_FILM_LIKES_BY_ID_QUERY, id, userId);
+        if (deleted > 0) {
+            jdbcTemplate.update(ADD_LIKE_COUNT_QUERY, -deleted, id);
+        }
         return getFilmById(id);
     }
 
+    private Map<Long, Film> assembleFilms(List<Film> rows, String genresQuery, String likesQuery, Object... args) {
+        Map<Long, Film> films = new LinkedHashMap<>();
+        for (Film film : rows) {
+            resolveMpa(film);
+            film.setGenres(new LinkedHashSet<>());
+            film.setLikes(likesQuery == null ? null : new LongHashSet());
+            films.putIfAbsent(film.getId(), film);
+        }
+        if (films.isEmpty()) {
+            return films;
+        }
+        if (hydrator.mode() != FilmHydrator.Mode.BATCH) {
+            boolean withLikes = likesQuery != null;
+            hydrator.hydrate(new ArrayList<>(films.values()), film -> {
+                film.setGenres(loadGenres(film.getId()));
+                if (withLikes) {
+                    film.setLikes(loadLikes(film.getId()));
+                }
+            });
+            return films;
+        }
+
+        jdbcTemplate.query(genresQuery, (RowCallbackHandler) rs -> {
+            Film film = films.get(rs.getLong("films_id"));
+            if (film != null) {
+                film.getGenres().add(genreStorage.getGenreById(rs.getLong("genre_id")));
+            }
+        }, args);
+        if (likesQuery == null) {
+            return films;
+        }
+        jdbcTemplate.query(likesQuery, (RowCallbackHandler) rs -> {
+            Film film = films.get(rs.getLong("films_id"));
+            if (film != null) {
+                film.getLikes().add(rs.getLong("users_id"));
+            }
+        }, args);
+        return films;
+    }
+
+    private int[] insertLikesIfAbsent(List<LikePair> pairs) {
+        if (pairs.isEmpty()) {
+            return new int[0];
+        }
+        List<Object[]> batch = pairs.stream()
+                .map(pair -> new Object[]{pair.filmId(), pair.userId(), pair.filmId(), pair.userId()})
+                .toList();
+        try {
+            return jdbcTemplate.batchUpdate(INSERT_FILM_LIKE_IF_ABSENT_QUERY, batch);
+        } catch (DuplicateKeyException e) {
+            // Ту же пару вставили параллельно между проверкой и вставкой. Пакет целиком не откатываем:
+            // что драйвер успел выполнить, берём из BatchUpdateException, остаток повторяем по одной строке,
+            // и занятые пары просто получают 0 изменённых строк
+            int[] done = e.getCause() instanceof BatchUpdateException failed ? failed.getUpdateCounts() : new int[0];
+            int[] counts = new int[batch.size()];
+            for (int i = 0; i < batch.size(); i++) {
+                if (i < done.length) {
+                    counts[i] = done[i] == Statement.EXECUTE_FAILED ? 0 : done[i];
+                    continue;
+                }
+                try {
+                    counts[i] = jdbcTemplate.update(INSERT_FILM_LIKE_IF_ABSENT_QUERY, batch.get(i));
+                } catch (DuplicateKeyException duplicate) {
+                    counts[i] = 0;
+                }
+            }
+            return counts;
+        }
+    }
+
+    private static boolean changed(int updateCount) {
+        return updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
+
+    private long getLikeCount(Long id) {
+        Long count = jdbcTemplate.queryForObject(GET_LIKE_COUNT_QUERY, Long.class, id);
+        return count == null ? 0 : count;
+    }
+
+    private NotFoundException missingFilmOrUser(Long id, Long userId) {
+        if (getExistingIds(List.of(id)).isEmpty()) {
+            return new NotFoundException("Такого фильма нет в списке!");
+        }
+        return new NotFoundException("Такого юзера нет в списке!");
+    }
+
+    private Set<Long> getExistingIds(Collection<Long> ids) {
+        Set<Long> existing = new HashSet<>();
+        if (ids.isEmpty()) {
+            return existing;
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.query(EXISTING_IDS_QUERY.formatted(placeholders),
+                (RowCallbackHandler) rs -> existing.add(rs.getLong("id")), ids.toArray());
+        return existing;
+    }
+
+    private Set<LikePair> loadLikePairs(Set<Long> filmIds, Set<Long> userIds) {
+        Set<LikePair> pairs = new HashSet<>();
+        if (filmIds.isEmpty() || userIds.isEmpty()) {
+            return pairs;
+        }
+        // Берём пересечение по фильмам и пользователям пакета: лишние пары просто не встретятся в событиях
+        List<Object> args = new ArrayList<>(filmIds);
+        args.addAll(userIds);
+        jdbcTemplate.query(LIKES_BY_PAIRS_QUERY.formatted(
+                        String.join(",", Collections.nCopies(filmIds.size(), "?")),
+                        String.join(",", Collections.nCopies(userIds.size(), "?"))),
+                (RowCallbackHandler) rs -> pairs.add(new LikePair(rs.getLong("films_id"), rs.getLong("users_id"))),
+                args.toArray());
+        return pairs;
+    }
+
+    private void checkReleaseDate(Film film) {
+        if (film.getReleaseDate() != null && film.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
+            throw new ValidationException("Дата релиза — не раньше 28 декабря 1895 года!");
+        }
+    }
+
+    private PreparedStatement openCursor(Connection connection, String sql) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(EXPORT_FETCH_SIZE);
+        return stmt;
+    }
+
+    private void resolveMpa(Film film) {
+        if (film.getMpa() != null) {
+            film.setMpa(ratingStorage.getRatingById(film.getMpa().getId()));
+        }
+    }
+
     private Set<Genre> loadGenres(Long filmId) {
-        List<Genre> genres = jdbcTemplate.query(
-                "SELECT g.id, g.name FROM genre g " +
-                        "JOIN films_genre fg ON g.id = fg.genre_id WHERE fg.films_id = ?",
-                new GenreRowMapper(),
-                filmId
-        );
-        genres.sort(Comparator.comparing(Genre::getId));
-        return new LinkedHashSet<>(genres);
-    }
-
-    private Set<Long> loadLikes(Long filmId) {
-        return new HashSet<>(jdbcTemplate.queryForList(
-                "SELECT users_id FROM films_likes WHERE films_id = ?",
-                Long.class,
-                filmId
-        ));
+        Set<Genre> genres = new LinkedHashSet<>();
+        for (Long genreId : jdbcTemplate.queryForList(GET_GENRES_BY_FILM_QUERY, Long.class, filmId)) {
+            genres.add(genreStorage.getGenreById(genreId));
+        }
+        return genres;
+    }
+
+    private LongHashSet loadLikes(Long filmId) {
+        LongHashSet likes = new LongHashSet();
+        jdbcTemplate.query(GET_LIKES_BY_FILM_QUERY, (RowCallbackHandler) rs -> likes.add(rs.getLong("users_id")), filmId);
+        return likes;
+    }
+
+    private record LikePair(long filmId, long userId) {
     }
 }
@@ -0,0 +1,129 @@
+package ru.yandex.practicum.filmorate.dao;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.dao.instrumentation.QueryMetrics;
+import ru.yandex.practicum.filmorate.exception.DatabaseException;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// Как дозагружать жанры и лайки списка фильмов:
+//   BATCH — двумя запросами на весь список (по умолчанию);
+//   SEQUENTIAL — по запросу на фильм, один за другим;
+//   PARALLEL — по запросу на фильм, но не больше parallelism фильмов одновременно, на виртуальных потоках.
+//              Предел общий для всех запросов приложения и меньше пула соединений, чтобы загрузка не заняла его целиком.
+// Пофильмовые режимы нужны там, где один запрос на весь список невозможен, например при шардировании по фильмам
+@Component
+public class FilmHydrator {
+    private static final Logger log = LoggerFactory.getLogger(FilmHydrator.class);
+
+    public enum Mode {
+        BATCH,
+        SEQUENTIAL,
+        PARALLEL
+    }
+
+    private final Mode mode;
+    private final int parallelism;
+    private final Duration deadline;
+    private final Semaphore permits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Autowired
+    public FilmHydrator(@Value("${filmorate.films.hydration.mode:batch}") Mode mode,
+                        @Value("${filmorate.films.hydration.parallelism:8}") int parallelism,
+                        @Value("${filmorate.films.hydration.deadline:5s}") Duration deadline,
+                        @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize) {
+        this.mode = mode;
+        this.parallelism = Math.min(parallelism, Math.max(1, poolSize - 1));
+        this.deadline = deadline;
+        this.permits = new Semaphore(this.parallelism, true);
+        if (this.parallelism < parallelism) {
+            log.warn("filmorate.films.hydration.parallelism={} не меньше пула соединений {}, используем {}.",
+                    parallelism, poolSize, this.parallelism);
+        }
+    }
+
+    public FilmHydrator(Mode mode, int parallelism, Duration deadline) {
+        this(mode, parallelism, deadline, Integer.MAX_VALUE);
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    // Заполняет фильмы на месте, так что порядок списка не меняется в любом режиме
+    public void hydrate(List<Film> films, Consumer<Film> loader) {
+        // Внутри транзакции соединение привязано к потоку: другие потоки не увидят её незакоммиченные данные
+        if (mode != Mode.PARALLEL || parallelism <= 1 || films.size() < 2
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            films.forEach(loader);
+            return;
+        }
+        long deadlineAt = System.nanoTime() + deadline.toNanos();
+        List<Future<?>> futures = new ArrayList<>(films.size());
+        try {
+            for (int i = 0; i < films.size(); i++) {
+                if (!permits.tryAcquire(remaining(deadlineAt), TimeUnit.NANOSECONDS)) {
+                    throw new TimeoutException();
+                }
+                Film film = films.get(i);
+                try {
+                    futures.add(executor.submit(QueryMetrics.inCurrentRequest(() -> {
+                        try {
+                            loader.accept(film);
+                        } finally {
+                            permits.release();
+                        }
+                    })));
+                } catch (RejectedExecutionException e) {
+                    // Исполнитель уже закрыт — приложение останавливается; остаток догружаем сами
+                    permits.release();
+                    log.warn("Параллельная загрузка недоступна, догружаем {} фильмов последовательно.",
+                            films.size() - i);
+                    films.subList(i, films.size()).forEach(loader);
+                    break;
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get(remaining(deadlineAt), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            cancel(futures);
+            throw new DatabaseException("Жанры и лайки фильмов не загрузились за " + deadline.toMillis() + " мс!");
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Загрузка жанров и лайков прервана!");
+        } catch (ExecutionException e) {
+            cancel(futures);
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new DatabaseException("Не удалось загрузить жанры и лайки: " + e.getCause().getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static long remaining(long deadlineAt) {
+        return Math.max(0, deadlineAt - System.nanoTime());
+    }
+
+    private static void cancel(List<Future<?>> futures) {
+        futures.forEach(future -> future.cancel(true));
+    }
+}
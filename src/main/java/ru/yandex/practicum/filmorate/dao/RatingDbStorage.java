@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
@@ -19,7 +20,8 @@ import java.util.Objects;
 
 @Repository
 @RequiredArgsConstructor
-@Qualifier("ratingDbStorage")
+@Profile("!in-memory")
+@Qualifier("ratingStorage")
 public class RatingDbStorage implements RatingStorage {
     private final JdbcTemplate jdbce;
 
@@ -2,8 +2,10 @@ package ru.yandex.practicum.filmorate.dao;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
@@ -16,17 +18,14 @@ import ru.yandex.practicum.filmorate.storage.UserStorage;
 import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.Statement;
-import java.util.Collection;
-import java.util.List;
-import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.*;
 import java.util.stream.Stream;
 
 @RequiredArgsConstructor
 @Repository
 @Component("userDbStorage")
-@Qualifier("userDbStorage")
+@Profile("!in-memory")
+@Qualifier("userStorage")
 public class UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbcTemplate;
 
@@ -35,6 +34,9 @@ public class UserDbStorage implements UserStorage {
             "UPDATE users SET email = ?, login = ?, name = ?, birthday = ? WHERE id = ?";
     private static final String GET_ID_QUERY = "SELECT * FROM users WHERE id = ?";
     private static final String GET_ALL_QUERY = "SELECT * FROM users";
+    private static final String GET_PAGE_QUERY = "SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String EXISTS_QUERY = "SELECT COUNT(*) FROM users WHERE id = ?";
+    private static final String EXISTING_IDS_QUERY = "SELECT id FROM users WHERE id IN (%s)";
     private static final String CREATE_FRIENDSHIP_QUERY =
             "INSERT INTO friends (senderUser_id, receiverUser_id, status) VALUES (?,?,?)";
     private static final String FIND_RECEIVER_FRIENDSHIP_QUERY =
@@ -48,8 +50,24 @@ public class UserDbStorage implements UserStorage {
     private static final String CONFIRMED_FRIENDSHIP_QUERY =
             "SELECT receiverUser_id FROM friends WHERE senderUser_id = ? AND status = 2";
     private static final String DELETE_FRIENDSHIP_QUERY =
-            "DELETE FROM friends WHERE (senderUser_id = ? AND receiverUser_id = ?) " +
-                    "OR(receiverUser_id = ? AND senderUser_id = ?)";
+            "DELETE FROM friends WHERE senderUser_id = ? AND receiverUser_id = ?";
+    // Друзья пользователя: те, кого он добавил, и подтвердившие дружбу с ним
+    private static final String FRIEND_IDS_SUBQUERY =
+            "SELECT senderUser_id FROM friends WHERE receiverUser_id = ? " +
+                    "UNION ALL SELECT receiverUser_id FROM friends WHERE senderUser_id = ? AND status = 2";
+    private static final String LIST_FRIENDS_QUERY =
+            "SELECT * FROM users WHERE id IN (" + FRIEND_IDS_SUBQUERY + ") ORDER BY id";
+    private static final String LIST_COMMON_FRIENDS_QUERY =
+            "SELECT * FROM users WHERE id IN (" + FRIEND_IDS_SUBQUERY + ") " +
+                    "AND id IN (" + FRIEND_IDS_SUBQUERY + ") ORDER BY id";
+    private static final String FRIENDS_OF_USERS_QUERY =
+            "SELECT receiverUser_id AS user_id, senderUser_id AS friend_id FROM friends " +
+                    "WHERE receiverUser_id IN (%s) " +
+                    "UNION ALL SELECT senderUser_id, receiverUser_id FROM friends " +
+                    "WHERE senderUser_id IN (%s) AND status = 2";
+    private static final String ALL_FRIENDS_QUERY =
+            "SELECT receiverUser_id AS user_id, senderUser_id AS friend_id FROM friends " +
+                    "UNION ALL SELECT senderUser_id, receiverUser_id FROM friends WHERE status = 2";
 
     @Override
     public User getUserById(Long id) {
@@ -57,11 +75,7 @@ public class UserDbStorage implements UserStorage {
             User user = jdbcTemplate.queryForObject(GET_ID_QUERY, new UserRowMapper(), id);
             if (user != null) {
                 // Добавляем друзей
-                List<Long> notConfirmedFriends = jdbcTemplate.queryForList(NOT_CONFIRMED_FRIENDSHIP_QUERY, Long.class, user.getId());
-                List<Long> confirmedFriends = jdbcTemplate.queryForList(CONFIRMED_FRIENDSHIP_QUERY, Long.class, user.getId());
-                Set<Long> allFriends = Stream.concat(notConfirmedFriends.stream(), confirmedFriends.stream())
-                        .collect(Collectors.toSet());
-                user.setFriends(allFriends);
+                loadFriends(List.of(user));
             }
             return user;
         } catch (DataAccessException e) {
@@ -69,17 +83,45 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    @Override
+    public boolean existsById(Long id) {
+        Integer count = jdbcTemplate.queryForObject(EXISTS_QUERY, Integer.class, id);
+        return count != null && count > 0;
+    }
+
+    @Override
+    public Set<Long> getExistingIds(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return new HashSet<>();
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList(EXISTING_IDS_QUERY.formatted(placeholders), Long.class,
+                ids.toArray()));
+    }
+
     @Override
     public Collection<User> getAllUsers() {
-        List<User> users = jdbcTemplate.query(GET_ALL_QUERY, new UserRowMapper());
-        for (User user : users) {
-            List<Long> notConfirmedFriends = jdbcTemplate.queryForList(NOT_CONFIRMED_FRIENDSHIP_QUERY, Long.class, user.getId());
-            List<Long> confirmedFriends = jdbcTemplate.queryForList(CONFIRMED_FRIENDSHIP_QUERY, Long.class, user.getId());
-            Set<Long> allFriends = Stream.concat(notConfirmedFriends.stream(), confirmedFriends.stream())
-                    .collect(Collectors.toSet());
-            user.setFriends(allFriends);
+        Map<Long, User> users = new LinkedHashMap<>();
+        for (User user : jdbcTemplate.query(GET_ALL_QUERY, new UserRowMapper())) {
+            users.put(user.getId(), user);
         }
-        return users;
+        jdbcTemplate.query(ALL_FRIENDS_QUERY, (RowCallbackHandler) rs -> {
+            User user = users.get(rs.getLong("user_id"));
+            if (user != null) {
+                user.getFriends().add(rs.getLong("friend_id"));
+            }
+        });
+        return new ArrayList<>(users.values());
+    }
+
+    @Override
+    public Collection<User> getUsersPage(long afterId, int limit, boolean withFriends) {
+        List<User> users = jdbcTemplate.query(GET_PAGE_QUERY, new UserRowMapper(), afterId, limit);
+        if (!withFriends) {
+            users.forEach(user -> user.setFriends(null));
+            return users;
+        }
+        return loadFriends(users);
     }
 
     @Override
@@ -99,7 +141,7 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public User updateUser(User user) {
-        if (getUserById(user.getId()) != null) {
+        if (existsById(user.getId())) {
             jdbcTemplate.update(connection -> {
                 PreparedStatement stmt = connection.prepareStatement(UPDATE_QUERY);
                 stmt.setString(1, user.getEmail());
@@ -124,7 +166,7 @@ public class UserDbStorage implements UserStorage {
                 stmt.setLong(3, senderUserId);
                 return stmt;
             });
-            return getUserById(senderUserId);
+            return getUserById(receiverUserId);
         } else if (!receivedFriends.contains(receiverUserId) && !senderFriends.contains(senderUserId)) {
 
             jdbcTemplate.update(connection -> {
@@ -134,25 +176,19 @@ public class UserDbStorage implements UserStorage {
                 stmt.setInt(3, 1);
                 return stmt;
             });
-            return getUserById(senderUserId);
+            return getUserById(receiverUserId);
         } else {
-            return getUserById(senderUserId);
+            return getUserById(receiverUserId);
         }
     }
 
     public Collection<User> listOfFriends(long id) {
-        List<Long> notConfirmedFriends = jdbcTemplate.queryForList(NOT_CONFIRMED_FRIENDSHIP_QUERY, Long.class, id);
-        List<Long> confirmedFriends = jdbcTemplate.queryForList(CONFIRMED_FRIENDSHIP_QUERY, Long.class, id);
-        Set<Long> friendsIds = Stream.concat(notConfirmedFriends.stream(), confirmedFriends.stream()).collect(Collectors.toSet());
-        return friendsIds.stream()
-                .map(ids -> getUserById(ids))
-                .collect(Collectors.toSet());
+        return loadFriends(jdbcTemplate.query(LIST_FRIENDS_QUERY, new UserRowMapper(), id, id));
     }
 
     public Collection<User> listOfCommonFriends(Long id, Long otherId) {
-        Collection<User> commonFriends = listOfFriends(id);
-        commonFriends.retainAll(listOfFriends(otherId));
-        return commonFriends;
+        return loadFriends(jdbcTemplate.query(LIST_COMMON_FRIENDS_QUERY, new UserRowMapper(),
+                id, id, otherId, otherId));
     }
 
     public User deleteFriendship(long id, long friendId) {
@@ -167,8 +203,26 @@ public class UserDbStorage implements UserStorage {
                 return stmt;
             });
         } else if (notConfirmedFriends.contains(friendId)) {
-            jdbcTemplate.update(DELETE_FRIENDSHIP_QUERY, id, friendId, id, friendId);
+            // Два запроса по первичному ключу вместо OR, который H2 выполняет полным проходом
+            jdbcTemplate.update(DELETE_FRIENDSHIP_QUERY, id, friendId);
+            jdbcTemplate.update(DELETE_FRIENDSHIP_QUERY, friendId, id);
         }
         return getUserById(id);
     }
+
+    private List<User> loadFriends(List<User> users) {
+        if (users.isEmpty()) {
+            return users;
+        }
+        Map<Long, User> usersById = new HashMap<>();
+        for (User user : users) {
+            usersById.put(user.getId(), user);
+        }
+        String placeholders = String.join(",", Collections.nCopies(usersById.size(), "?"));
+        Object[] ids = usersById.keySet().toArray();
+        Object[] args = Stream.concat(Arrays.stream(ids), Arrays.stream(ids)).toArray();
+        jdbcTemplate.query(FRIENDS_OF_USERS_QUERY.formatted(placeholders, placeholders), (RowCallbackHandler) rs ->
+                usersById.get(rs.getLong("user_id")).getFriends().add(rs.getLong("friend_id")), args);
+        return users;
+    }
 }
@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.dao.instrumentation;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.function.Supplier;
+
+// Оборачивает соединения так, что каждый выполненный Statement попадает в QueryMetrics.
+// Время считается от выполнения до закрытия ResultSet, то есть вместе с чтением строк.
+// Наследуем DelegatingDataSource, чтобы actuator по-прежнему добирался до HikariDataSource через unwrap
+public class InstrumentedDataSource extends DelegatingDataSource {
+    private final Supplier<QueryMetrics> metrics;
+
+    public InstrumentedDataSource(DataSource target, Supplier<QueryMetrics> metrics) {
+        super(target);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrapConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrapConnection(super.getConnection(username, password));
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, connection, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement statement && args != null && args.length > 0
+                    && args[0] instanceof String sql) {
+                // prepareStatement / prepareCall: текст известен заранее
+                return wrapStatement(statement, sql);
+            }
+            if (result instanceof Statement statement) {
+                return wrapStatement(statement, null);
+            }
+            return result;
+        });
+    }
+
+    private Statement wrapStatement(Statement statement, String preparedSql) {
+        StatementTracker tracker = new StatementTracker(preparedSql);
+        Class<? extends Statement> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return proxy(type, statement, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.equals("close")) {
+                tracker.finish();
+                return invoke(statement, method, args);
+            }
+            if (!name.startsWith("execute")) {
+                Object result = invoke(statement, method, args);
+                return result instanceof ResultSet rs ? wrapResultSet(rs, tracker) : result;
+            }
+            // Выполнение того же Statement заново закрывает прошлый результат
+            tracker.finish();
+            tracker.start(args != null && args.length > 0 && args[0] instanceof String sql ? sql : preparedSql);
+            Object result = invoke(statement, method, args);
+            if (result instanceof ResultSet rs) {
+                return wrapResultSet(rs, tracker);
+            }
+            if (result instanceof Integer count) {
+                tracker.finish(Math.max(count, 0));
+            } else if (result instanceof Long count) {
+                tracker.finish(Math.max(count, 0));
+            } else if (result instanceof int[] counts) {
+                long rows = 0;
+                for (int count : counts) {
+                    rows += Math.max(count, 0);
+                }
+                tracker.finish(rows);
+            } else if (result instanceof long[] counts) {
+                long rows = 0;
+                for (long count : counts) {
+                    rows += Math.max(count, 0);
+                }
+                tracker.finish(rows);
+            } else if (Boolean.FALSE.equals(result)) {
+                tracker.finish(Math.max(statement.getUpdateCount(), 0));
+            }
+            // execute() == true: строки досчитает ResultSet из getResultSet()
+            return result;
+        });
+    }
+
+    private ResultSet wrapResultSet(ResultSet resultSet, StatementTracker tracker) {
+        return proxy(ResultSet.class, resultSet, (proxy, method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                tracker.rows++;
+            } else if (method.getName().equals("close")) {
+                tracker.finish();
+            }
+            return result;
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    // Statement используется одним потоком, синхронизация не нужна
+    private class StatementTracker {
+        private final String preparedSql;
+        private String sql;
+        private long startedAt;
+        private long rows;
+        private boolean running;
+
+        StatementTracker(String preparedSql) {
+            this.preparedSql = preparedSql;
+        }
+
+        void start(String sql) {
+            this.sql = sql == null ? preparedSql : sql;
+            this.startedAt = System.nanoTime();
+            this.rows = 0;
+            this.running = this.sql != null;
+        }
+
+        void finish(long rows) {
+            this.rows = rows;
+            finish();
+        }
+
+        void finish() {
+            if (!running) {
+                return;
+            }
+            running = false;
+            metrics.get().record(sql, System.nanoTime() - startedAt, rows);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.dao.instrumentation;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+// Подменяет DataSource обёрткой со счётчиками: JdbcTemplate и транзакции получают её, ничего не зная о замерах.
+// QueryMetrics достаём лениво — постпроцессор создаётся раньше MeterRegistry
+@Component
+@ConditionalOnProperty(name = "filmorate.jdbc.instrumentation.enabled", havingValue = "true", matchIfMissing = true)
+public class InstrumentedDataSourcePostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<QueryMetrics> metrics;
+
+    public InstrumentedDataSourcePostProcessor(ObjectProvider<QueryMetrics> metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+            return new InstrumentedDataSource(dataSource, metrics::getObject);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.dao.instrumentation;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Считает SQL-запросы одного HTTP-запроса и предупреждает, если их больше бюджета — обычно это N+1
+@Component
+@ConditionalOnProperty(name = "filmorate.jdbc.instrumentation.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryBudgetFilter extends OncePerRequestFilter {
+    private static final Logger log = LoggerFactory.getLogger(QueryBudgetFilter.class);
+    private static final int TOP_QUERIES = 5;
+
+    private final QueryMetrics queryMetrics;
+    private final MeterRegistry meterRegistry;
+    private final int budget;
+
+    public QueryBudgetFilter(QueryMetrics queryMetrics,
+                             MeterRegistry meterRegistry,
+                             @Value("${filmorate.jdbc.query-budget:50}") int budget) {
+        this.queryMetrics = queryMetrics;
+        this.meterRegistry = meterRegistry;
+        this.budget = budget;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        queryMetrics.startCounting();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            report(request, queryMetrics.stopCounting());
+        }
+    }
+
+    private void report(HttpServletRequest request, Map<String, Integer> counts) {
+        int total = counts.values().stream().mapToInt(Integer::intValue).sum();
+        // Шаблон пути вместо самого пути, иначе каждый id даст свою метрику
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern == null ? "UNKNOWN" : pattern.toString();
+        DistributionSummary.builder("filmorate.jdbc.request.queries")
+                .description("SQL-запросов на один HTTP-запрос")
+                .tag("method", request.getMethod())
+                .tag("uri", uri)
+                .register(meterRegistry)
+                .record(total);
+        if (total > budget) {
+            String top = counts.entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .limit(TOP_QUERIES)
+                    .map(entry -> entry.getKey() + "=" + entry.getValue())
+                    .collect(Collectors.joining(", "));
+            log.warn("{} {} выполнил {} SQL-запросов при бюджете {}, похоже на N+1: {}",
+                    request.getMethod(), request.getRequestURI(), total, budget, top);
+        }
+    }
+}
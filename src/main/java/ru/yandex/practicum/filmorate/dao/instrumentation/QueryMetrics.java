@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.dao.instrumentation;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.RatingDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Время и число строк по каждой именованной константе SQL, плюс счёт запросов внутри текущего HTTP-запроса
+@Component
+public class QueryMetrics {
+    private static final ThreadLocal<Map<String, Integer>> REQUEST_QUERIES = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final QueryNames names;
+    private final Map<String, Meters> meters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public QueryMetrics(MeterRegistry meterRegistry) {
+        this(meterRegistry, new QueryNames(FilmDbStorage.class, UserDbStorage.class, GenreDbStorage.class,
+                RatingDbStorage.class));
+    }
+
+    public QueryMetrics(MeterRegistry meterRegistry, QueryNames names) {
+        this.meterRegistry = meterRegistry;
+        this.names = names;
+    }
+
+    public void record(String sql, long nanos, long rows) {
+        String name = names.nameOf(sql);
+        Meters queryMeters = meters.computeIfAbsent(name, this::register);
+        queryMeters.latency.record(nanos, TimeUnit.NANOSECONDS);
+        queryMeters.rows.record(rows);
+        Map<String, Integer> counts = REQUEST_QUERIES.get();
+        if (counts != null) {
+            counts.merge(name, 1, Integer::sum);
+        }
+    }
+
+    // Начинает счёт запросов для текущего потока; stopCounting возвращает накопленное по константам
+    public void startCounting() {
+        REQUEST_QUERIES.set(new ConcurrentHashMap<>());
+    }
+
+    // Запросы задачи, запущенной на другом потоке, идут в счёт того HTTP-запроса, который её запустил
+    public static Runnable inCurrentRequest(Runnable task) {
+        Map<String, Integer> counts = REQUEST_QUERIES.get();
+        if (counts == null) {
+            return task;
+        }
+        return () -> {
+            REQUEST_QUERIES.set(counts);
+            try {
+                task.run();
+            } finally {
+                REQUEST_QUERIES.remove();
+            }
+        };
+    }
+
+    public Map<String, Integer> stopCounting() {
+        Map<String, Integer> counts = REQUEST_QUERIES.get();
+        REQUEST_QUERIES.remove();
+        return counts == null ? Map.of() : counts;
+    }
+
+    private Meters register(String name) {
+        Timer latency = Timer.builder("filmorate.jdbc.query")
+                .description("Время выполнения SQL вместе с чтением результата")
+                .tag("query", name)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        DistributionSummary rows = DistributionSummary.builder("filmorate.jdbc.query.rows")
+                .description("Строк прочитано или изменено одним выполнением")
+                .tag("query", name)
+                .register(meterRegistry);
+        return new Meters(latency, rows);
+    }
+
+    private record Meters(Timer latency, DistributionSummary rows) {
+    }
+}
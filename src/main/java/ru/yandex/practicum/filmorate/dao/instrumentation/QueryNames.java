@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.dao.instrumentation;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// Сопоставляет текст SQL с константой *_QUERY, из которой он взят: "FilmDbStorage.GET_ALL_QUERY".
+// Шаблоны со списком IN (%s) узнаются при любой длине списка
+public class QueryNames {
+    public static final String OTHER = "other";
+    // Тексты с разной длиной списка IN не должны раздувать кэш без предела
+    private static final int MAX_CACHED = 10_000;
+
+    private final Map<String, String> exact = new HashMap<>();
+    private final Map<Pattern, String> templates = new LinkedHashMap<>();
+    private final Map<String, String> resolved = new ConcurrentHashMap<>();
+
+    public QueryNames(Class<?>... daos) {
+        for (Class<?> dao : daos) {
+            for (Field field : dao.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class
+                        || !field.getName().endsWith("_QUERY")) {
+                    continue;
+                }
+                field.setAccessible(true);
+                String sql;
+                try {
+                    sql = (String) field.get(null);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+                String name = dao.getSimpleName() + "." + field.getName();
+                if (sql.contains("%s")) {
+                    templates.putIfAbsent(toPattern(sql), name);
+                } else {
+                    exact.putIfAbsent(normalize(sql), name);
+                }
+            }
+        }
+    }
+
+    public String nameOf(String sql) {
+        String name = resolved.get(sql);
+        if (name != null) {
+            return name;
+        }
+        name = lookup(sql);
+        if (resolved.size() < MAX_CACHED) {
+            resolved.put(sql, name);
+        }
+        return name;
+    }
+
+    private String lookup(String sql) {
+        String normalized = normalize(sql);
+        String name = exact.get(normalized);
+        if (name != null) {
+            return name;
+        }
+        for (Map.Entry<Pattern, String> template : templates.entrySet()) {
+            if (template.getKey().matcher(normalized).matches()) {
+                return template.getValue();
+            }
+        }
+        return OTHER;
+    }
+
+    private static Pattern toPattern(String template) {
+        String[] parts = normalize(template).split("%s", -1);
+        StringJoiner regex = new StringJoiner("[?,\\s]*");
+        for (String part : parts) {
+            regex.add(Pattern.quote(part));
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    // Константы бывают разбиты на строки с разными отступами
+    private static String normalize(String sql) {
+        return sql.trim().replaceAll("\\s+", " ");
+    }
+}
@@ -26,10 +26,8 @@ public class FilmRowMapper implements RowMapper<Film> {
         film.setDuration(rs.getInt("duration"));
 
         Long ratingId = rs.getLong("rating_id");
-        String ratingName = rs.getString("rating_name");
-        if (ratingId != 0) { // 0 = нет значения
-            Rating rating = new Rating(ratingId, ratingName);
-            film.setMpa(rating);
+        if (ratingId != 0) { // 0 = нет значения, название подставляет хранилище
+            film.setMpa(Rating.builder().id(ratingId).build());
         }
 
         return film;
@@ -17,4 +17,17 @@ public class FilmMapper {
                 .mpa(filmDto.getMpa())
                 .build();
     }
+
+    // Краткая проекция списка: FilmDto — тот же фильм без лайков
+    public static FilmDto mapToFilmDto(Film film) {
+        FilmDto filmDto = new FilmDto();
+        filmDto.setId(film.getId());
+        filmDto.setName(film.getName());
+        filmDto.setDescription(film.getDescription());
+        filmDto.setReleaseDate(film.getReleaseDate());
+        filmDto.setDuration(film.getDuration());
+        filmDto.setGenres(film.getGenres());
+        filmDto.setMpa(film.getMpa());
+        return filmDto;
+    }
 }
@@ -15,4 +15,15 @@ public class UserMapper {
                 .birthday(userDto.getBirthday())
                 .build();
     }
+
+    // Краткая проекция списка: UserDto — тот же юзер без друзей
+    public static UserDto mapToUserDto(User user) {
+        UserDto userDto = new UserDto();
+        userDto.setId(user.getId());
+        userDto.setEmail(user.getEmail());
+        userDto.setLogin(user.getLogin());
+        userDto.setName(user.getName());
+        userDto.setBirthday(user.getBirthday());
+        return userDto;
+    }
 }
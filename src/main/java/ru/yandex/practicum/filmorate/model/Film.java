@@ -16,7 +16,7 @@ public class Film {
     private String description;
     private LocalDate releaseDate;
     private int duration;
-    private Set<Long> likes = new HashSet<>();
+    private LongHashSet likes = new LongHashSet();
     private Set<Genre> genres = new HashSet<>();
     private Rating mpa;
 }
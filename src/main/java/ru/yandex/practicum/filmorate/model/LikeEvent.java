@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LikeEvent {
+    private Long filmId;
+    private Long userId;
+    private Op op;
+
+    public enum Op {
+        LIKE,
+        UNLIKE
+    }
+}
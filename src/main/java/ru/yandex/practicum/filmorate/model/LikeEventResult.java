@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LikeEventResult {
+    private int index;
+    private Long filmId;
+    private Long userId;
+    private Status status;
+
+    public boolean isApplied() {
+        return status == Status.APPLIED;
+    }
+
+    public enum Status {
+        APPLIED,
+        DUPLICATE, // лайк уже стоит
+        NOT_LIKED, // снимаем лайк, которого нет
+        FILM_NOT_FOUND,
+        USER_NOT_FOUND,
+        INVALID
+    }
+}
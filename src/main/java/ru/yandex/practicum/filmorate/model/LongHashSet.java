@@ -0,0 +1,270 @@
+package ru.yandex.practicum.filmorate.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+// Множество id без упаковки в Long: открытая адресация с линейным пробированием по long[].
+// 0 хранится отдельным флагом, потому что пустая ячейка в таблице — это 0
+@JsonSerialize(using = LongHashSet.Serializer.class)
+public class LongHashSet extends AbstractSet<Long> {
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] keys;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private boolean hasZero;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongHashSet(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public LongHashSet(LongHashSet other) {
+        keys = other.keys.clone();
+        mask = other.mask;
+        resizeAt = other.resizeAt;
+        size = other.size;
+        hasZero = other.hasZero;
+    }
+
+    public LongHashSet(Collection<Long> values) {
+        this(values.size());
+        addAll(values);
+    }
+
+    public boolean add(long key) {
+        if (key == 0) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            return true;
+        }
+        int i = slot(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if (key == 0) {
+            return hasZero;
+        }
+        return indexOf(key) >= 0;
+    }
+
+    public boolean remove(long key) {
+        if (key == 0) {
+            boolean had = hasZero;
+            hasZero = false;
+            return had;
+        }
+        int gap = indexOf(key);
+        if (gap < 0) {
+            return false;
+        }
+        // Сдвигаем хвост цепочки назад, чтобы поиск не обрывался на образовавшейся дыре
+        int j = gap;
+        while (true) {
+            j = (j + 1) & mask;
+            long k = keys[j];
+            if (k == 0) {
+                break;
+            }
+            int ideal = slot(k);
+            if (((j - ideal) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = k;
+                gap = j;
+            }
+        }
+        keys[gap] = 0;
+        size--;
+        return true;
+    }
+
+    public void forEachLong(LongConsumer action) {
+        if (hasZero) {
+            action.accept(0);
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                action.accept(key);
+            }
+        }
+    }
+
+    public long[] toLongArray() {
+        long[] result = new long[size()];
+        int i = 0;
+        if (hasZero) {
+            i++;
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean add(Long key) {
+        return add(key.longValue());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long key && contains(key.longValue());
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Long key && remove(key.longValue());
+    }
+
+    @Override
+    public int size() {
+        return size + (hasZero ? 1 : 0);
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+        hasZero = false;
+    }
+
+    // Итератор не умеет удалять: сдвиг при удалении перемешал бы ещё не пройденные ячейки
+    @Override
+    public boolean removeIf(Predicate<? super Long> filter) {
+        boolean removed = false;
+        for (long key : toLongArray()) {
+            if (filter.test(key)) {
+                removed |= remove(key);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return removeIf(key -> !c.contains(key));
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<>() {
+            private int index = hasZero ? -1 : nextIndex(0);
+
+            @Override
+            public boolean hasNext() {
+                return index < keys.length;
+            }
+
+            @Override
+            public Long next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long key = index < 0 ? 0 : keys[index];
+                index = nextIndex(index + 1);
+                return key;
+            }
+        };
+    }
+
+    private int nextIndex(int from) {
+        int i = from;
+        while (i < keys.length && keys[i] == 0) {
+            i++;
+        }
+        return i;
+    }
+
+    private int indexOf(long key) {
+        int i = slot(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = keys;
+        allocate(capacity);
+        size = 0;
+        for (long key : old) {
+            if (key != 0) {
+                int i = slot(key);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int needed = Math.max(MIN_CAPACITY, (int) Math.ceil(expectedSize / LOAD_FACTOR) + 1);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    // Пишем массив чисел напрямую, без упаковки; порядок по возрастанию, как у HashSet на небольших id
+    public static class Serializer extends StdSerializer<LongHashSet> {
+        public Serializer() {
+            super(LongHashSet.class);
+        }
+
+        @Override
+        public void serialize(LongHashSet value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            long[] ids = value.toLongArray();
+            Arrays.sort(ids);
+            gen.writeArray(ids, 0, ids.length);
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, LongHashSet value) {
+            return value.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class PopularityReport {
+    private int checked;
+    private boolean consistent;
+    private boolean repaired;
+    @Builder.Default
+    private List<Mismatch> mismatches = new ArrayList<>();
+
+    @Data
+    @AllArgsConstructor
+    public static class Mismatch {
+        private Long filmId;
+        private Long stored;
+        private Long actual;
+    }
+}
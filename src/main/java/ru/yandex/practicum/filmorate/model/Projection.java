@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.model;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+public enum Projection {
+    FULL,
+    // Без списков лайков и друзей
+    SUMMARY;
+
+    public static Projection parse(String value) {
+        for (Projection projection : values()) {
+            if (projection.name().equalsIgnoreCase(value)) {
+                return projection;
+            }
+        }
+        throw new ValidationException("Неизвестная проекция: " + value);
+    }
+}
@@ -1,36 +1,55 @@
 package ru.yandex.practicum.filmorate.service;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.stereotype.Service;
-import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
-import ru.yandex.practicum.filmorate.dao.RatingDbStorage;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.TooManyRequestsException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeEventResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.PopularityReport;
+import ru.yandex.practicum.filmorate.model.Projection;
+import ru.yandex.practicum.filmorate.model.Rating;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.RatingStorage;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 public class FilmService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
-    private final RatingDbStorage ratingDbStorage;
-    private final GenreDbStorage genreDbStorage;
-
-    public FilmService(@Qualifier("filmDbStorage") FilmStorage filmStorage,
-                       @Qualifier("userDbStorage") UserStorage userStorage,
-                       @Qualifier("ratingDbStorage") RatingDbStorage ratingDbStorage,
-                       @Qualifier("genreDbStorage")GenreDbStorage genreDbStorage) {
+    private final RatingStorage ratingStorage;
+    private final GenreStorage genreStorage;
+    // Выгрузка держит соединение из пула, пока клиент читает ответ, поэтому одновременных выгрузок немного
+    private final Semaphore exports;
+
+    public FilmService(@Qualifier("filmCacheStorage") FilmStorage filmStorage,
+                       @Qualifier("userStorage") UserStorage userStorage,
+                       @Qualifier("ratingCacheStorage") RatingStorage ratingStorage,
+                       @Qualifier("genreCacheStorage") GenreStorage genreStorage,
+                       @Value("${filmorate.films.export.max-concurrent:2}") int maxConcurrentExports) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
-        this.ratingDbStorage = ratingDbStorage;
-        this.genreDbStorage = genreDbStorage;
+        this.ratingStorage = ratingStorage;
+        this.genreStorage = genreStorage;
+        this.exports = new Semaphore(maxConcurrentExports);
     }
 
     public Film getFilmById(Long id) {
@@ -49,42 +68,123 @@ public class FilmService {
         return filmStorage.deleteLikesFilm(id, userId);
     }
 
+    public LikeStatus addLike(Long id, Long userId) {
+        return filmStorage.addLike(id, userId);
+    }
+
+    public LikeStatus removeLike(Long id, Long userId) {
+        return filmStorage.removeLike(id, userId);
+    }
+
+    public List<LikeEventResult> applyLikeEvents(List<LikeEvent> events) {
+        if (events == null || events.isEmpty()) {
+            throw new ValidationException("Список событий пуст!");
+        }
+        return filmStorage.applyLikeEvents(events);
+    }
+
     public Collection<Film> listFirstCountFilm(int count) {
-        Collection<Film> films;
-        films = sortingToDown().stream()
-                .limit(count)
-                .toList();
-        return films;
+        if (count < 0) {
+            throw new ValidationException("Количество фильмов не может быть отрицательным!");
+        }
+        return filmStorage.topPopular(count);
     }
 
-    public List<Film> sortingToDown() {
-        ArrayList<Film> listFilms = new ArrayList<>(filmStorage.getAllFilms());
-        listFilms.sort((Film film1, Film film2) ->
-                Integer.compare(film2.getLikes().size(), film1.getLikes().size())
-        );
-        return listFilms;
+    public PopularityReport checkPopularity(boolean repair) {
+        return filmStorage.checkPopularity(repair);
     }
 
     public Collection<Film> getAllFilms() {
         return filmStorage.getAllFilms();
     }
 
+    public Collection<Film> getAllFilms(Long after, Integer limit, String projection) {
+        boolean withLikes = Projection.parse(projection) == Projection.FULL;
+        if (after == null && limit == null) {
+            return withLikes ? filmStorage.getAllFilms() : filmStorage.getFilmsPage(0, Integer.MAX_VALUE, false);
+        }
+        return filmStorage.getFilmsPage(after == null ? 0 : after, pageSize(limit), withLikes);
+    }
+
+    // Место занимается до ответа, чтобы лишний клиент сразу получил 429, а освобождается вызовом
+    // возвращённого Runnable, когда выгрузка дописана
+    public Runnable reserveExport() {
+        if (!exports.tryAcquire()) {
+            throw new TooManyRequestsException("Слишком много одновременных выгрузок, повторите позже!");
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                exports.release();
+            }
+        };
+    }
+
+    public void exportFilms(Consumer<Film> consumer) {
+        filmStorage.forEachFilm(consumer);
+    }
+
     public Film createFilm(Film film) {
         validateFilm(film);
-        ratingDbStorage.getRatingById(film.getMpa().getId());
+        ratingStorage.getRatingById(film.getMpa().getId());
         if (film.getGenres() != null) {
             for (Genre g : film.getGenres()) {
-                genreDbStorage.getGenreById(g.getId());
+                genreStorage.getGenreById(g.getId());
             }
         }
         return filmStorage.createFilm(film);
     }
 
+    public List<Long> createFilms(List<Film> films) {
+        if (films == null || films.isEmpty()) {
+            throw new ValidationException("Список фильмов пуст!");
+        }
+        // Справочники берём из кэша один раз на весь пакет, а не по запросу на каждый жанр
+        Set<Long> ratingIds = ratingStorage.getAllRatings().stream()
+                .map(Rating::getId)
+                .collect(Collectors.toSet());
+        Set<Long> genreIds = genreStorage.getAllGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            try {
+                validateFilm(film);
+                if (film.getReleaseDate() == null) {
+                    throw new ValidationException("Release date is missing");
+                }
+            } catch (ValidationException e) {
+                throw new ValidationException("Фильм #" + i + ": " + e.getMessage());
+            }
+            if (!ratingIds.contains(film.getMpa().getId())) {
+                throw new NotFoundException("Фильм #" + i + ": такого рейтинга нет!");
+            }
+            if (film.getGenres() != null) {
+                for (Genre g : film.getGenres()) {
+                    if (!genreIds.contains(g.getId())) {
+                        throw new NotFoundException("Фильм #" + i + ": такого жанра нет!");
+                    }
+                }
+            }
+        }
+        return filmStorage.createFilms(films);
+    }
+
     public Film updateFilm(Film film) {
         validateFilm(film);
         return filmStorage.updateFilm(film);
     }
 
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE + "!");
+        }
+        return limit;
+    }
+
     private void validateFilm(Film film) {
 
         if (film.getName() == null || film.getName().isBlank()) {
@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Projection;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
 
@@ -12,58 +13,56 @@ import java.util.*;
 
 @Service
 public class UserService {
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final UserStorage userStorage;
 
-    public UserService(@Qualifier("userDbStorage") UserStorage userStorage) {
+    public UserService(@Qualifier("userStorage") UserStorage userStorage) {
         this.userStorage = userStorage;
     }
 
     public User getUserById(Long id) {
-        if (userStorage.getUserById(id) == null) {
+        User user = userStorage.getUserById(id);
+        if (user == null) {
             throw new NotFoundException("Такого юзера нет в списке!");
         }
-        return userStorage.getUserById(id);
+        return user;
     }
 
     public User makeFriendship(long id, long friendId) {
-        if (userStorage.getUserById(id) == null) {
+        Set<Long> existing = userStorage.getExistingIds(List.of(id, friendId));
+        if (!existing.contains(id)) {
             throw new NotFoundException("Такого юзера нет в списке!");
         }
-        if (userStorage.getUserById(friendId) == null) {
+        if (!existing.contains(friendId)) {
             throw new NotFoundException("Невозможно добавить в друзья несуществующего юзера!");
         }
-        userStorage.createFriendship(id, friendId);
-        return userStorage.getUserById(id);
+        return userStorage.createFriendship(id, friendId);
     }
 
     public User deleteFriendship(long id, long friendId) {
-        if (userStorage.getUserById(id) == null) {
+        Set<Long> existing = userStorage.getExistingIds(List.of(id, friendId));
+        if (!existing.contains(id)) {
             throw new NotFoundException("Такого юзера нет в списке!");
         }
-        if (userStorage.getUserById(friendId) == null) {
+        if (!existing.contains(friendId)) {
             throw new NotFoundException("Удаляемого из друзья юзера нет в списке!");
         }
-        userStorage.deleteFriendship(id, friendId);
-        return userStorage.getUserById(id);
+        return userStorage.deleteFriendship(id, friendId);
     }
 
     public Collection<User> listOfFriends(long id) {
-        if (userStorage.getUserById(id) == null) {
+        if (!userStorage.existsById(id)) {
             throw new NotFoundException("Такого юзера нет в списке!");
         }
-        if (userStorage.getUserById(id).getFriends() == null) {
-            throw new NotFoundException("Список друзей пуст!");
-        }
         return userStorage.listOfFriends(id);
     }
 
     public Collection<User> listOfCommonFriends(Long id, Long otherId) {
-        if (userStorage.getUserById(id) == null || userStorage.getUserById(otherId) == null) {
+        if (!userStorage.getExistingIds(List.of(id, otherId)).containsAll(List.of(id, otherId))) {
             throw new NotFoundException("Одного из юзеров нет в списке!");
         }
-        if (userStorage.getUserById(id).getFriends() == null || userStorage.getUserById(otherId).getFriends() == null) {
-            throw new NotFoundException("Один из списков друзей пуст!");
-        }
         return userStorage.listOfCommonFriends(id, otherId);
     }
 
@@ -71,6 +70,14 @@ public class UserService {
         return userStorage.getAllUsers();
     }
 
+    public Collection<User> getAllUsers(Long after, Integer limit, String projection) {
+        boolean withFriends = Projection.parse(projection) == Projection.FULL;
+        if (after == null && limit == null) {
+            return withFriends ? userStorage.getAllUsers() : userStorage.getUsersPage(0, Integer.MAX_VALUE, false);
+        }
+        return userStorage.getUsersPage(after == null ? 0 : after, pageSize(limit), withFriends);
+    }
+
     public User createUser(User user) {
         validateUser(user);
         return userStorage.createUser(user);
@@ -81,6 +88,16 @@ public class UserService {
         return userStorage.updateUser(user);
     }
 
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE + "!");
+        }
+        return limit;
+    }
+
     private void validateUser(User user) {
 
         if (user.getEmail() == null || user.getEmail().isBlank() || !user.getEmail().contains("@")) {
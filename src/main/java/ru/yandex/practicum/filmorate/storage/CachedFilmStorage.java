@@ -0,0 +1,215 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeEventResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.PopularityReport;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Consumer;
+
+@Component("filmCacheStorage")
+@Qualifier("filmCacheStorage")
+public class CachedFilmStorage implements FilmStorage {
+    private final FilmStorage filmStorage;
+    private final boolean enabled;
+    private final LruCache<Long, Film> cache;
+    private final Counter hits;
+    private final Counter misses;
+
+    public CachedFilmStorage(@Qualifier("filmWriteBehindStorage") FilmStorage filmStorage,
+                             @Value("${filmorate.cache.films.enabled:true}") boolean enabled,
+                             @Value("${filmorate.cache.films.max-size:10000}") int maxSize,
+                             @Value("${filmorate.cache.films.ttl:5m}") Duration ttl,
+                             MeterRegistry meterRegistry) {
+        this.filmStorage = filmStorage;
+        this.enabled = enabled;
+        this.cache = new LruCache<>(maxSize, ttl);
+        this.hits = Counter.builder("cache.gets").tag("cache", "films").tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", "films").tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", cache, LruCache::evictions).tag("cache", "films")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", cache, LruCache::size).tag("cache", "films")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Film getFilmById(Long id) {
+        if (!enabled) {
+            return filmStorage.getFilmById(id);
+        }
+        Film film = cache.get(id);
+        if (film != null) {
+            hits.increment();
+            return copyOf(film);
+        }
+        misses.increment();
+        long generation = cache.generation(id);
+        film = filmStorage.getFilmById(id);
+        // Пока грузили, фильм могли обновить или лайкнуть: тогда загруженное уже устарело
+        cache.putIfUnchanged(id, copyOf(film), generation);
+        return film;
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return filmStorage.getAllFilms();
+    }
+
+    @Override
+    public Collection<Film> getFilmsByIds(List<Long> ids) {
+        if (!enabled) {
+            return filmStorage.getFilmsByIds(ids);
+        }
+        Map<Long, Film> found = new HashMap<>();
+        Map<Long, Long> missing = new LinkedHashMap<>();
+        for (Long id : ids) {
+            Film film = cache.get(id);
+            if (film != null) {
+                found.put(id, copyOf(film));
+            } else {
+                missing.put(id, cache.generation(id));
+            }
+        }
+        hits.increment(found.size());
+        misses.increment(missing.size());
+        for (Film film : filmStorage.getFilmsByIds(new ArrayList<>(missing.keySet()))) {
+            cache.putIfUnchanged(film.getId(), copyOf(film), missing.get(film.getId()));
+            found.put(film.getId(), film);
+        }
+        return ids.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public Collection<Film> getFilmsPage(long afterId, int limit, boolean withLikes) {
+        return filmStorage.getFilmsPage(afterId, limit, withLikes);
+    }
+
+    @Override
+    public void forEachFilm(Consumer<Film> consumer) {
+        filmStorage.forEachFilm(consumer);
+    }
+
+    @Override
+    public Film createFilm(Film film) {
+        Film created = filmStorage.createFilm(film);
+        if (enabled) {
+            cache.put(created.getId(), copyOf(created));
+        }
+        return created;
+    }
+
+    @Override
+    public List<Long> createFilms(List<Film> films) {
+        // Пакетная загрузка не перечитывает агрегаты, кэш заполнится при первом чтении
+        return filmStorage.createFilms(films);
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        Film updated = filmStorage.updateFilm(film);
+        // Ответ updateFilm собран из запроса, без лайков и жанров из базы, поэтому просто сбрасываем запись
+        cache.invalidate(film.getId());
+        return updated;
+    }
+
+    @Override
+    public Film userLikesFilm(Long id, Long userId) {
+        long generation = cache.generation(id);
+        return refresh(id, filmStorage.userLikesFilm(id, userId), generation);
+    }
+
+    @Override
+    public Film deleteLikesFilm(Long id, Long userId) {
+        long generation = cache.generation(id);
+        return refresh(id, filmStorage.deleteLikesFilm(id, userId), generation);
+    }
+
+    @Override
+    public LikeStatus addLike(Long id, Long userId) {
+        LikeStatus status = filmStorage.addLike(id, userId);
+        cache.invalidate(id);
+        return status;
+    }
+
+    @Override
+    public LikeStatus removeLike(Long id, Long userId) {
+        LikeStatus status = filmStorage.removeLike(id, userId);
+        cache.invalidate(id);
+        return status;
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return filmStorage.existsById(id);
+    }
+
+    @Override
+    public boolean hasLike(Long id, Long userId) {
+        return filmStorage.hasLike(id, userId);
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts(List<Long> ids) {
+        return filmStorage.getLikeCounts(ids);
+    }
+
+    @Override
+    public List<LikeEventResult> applyLikeEvents(List<LikeEvent> events) {
+        List<LikeEventResult> results = filmStorage.applyLikeEvents(events);
+        results.stream()
+                .filter(LikeEventResult::isApplied)
+                .map(LikeEventResult::getFilmId)
+                .distinct()
+                .forEach(cache::invalidate);
+        return results;
+    }
+
+    @Override
+    public Collection<Film> topPopular(int count) {
+        return filmStorage.topPopular(count);
+    }
+
+    @Override
+    public PopularityReport checkPopularity(boolean repair) {
+        return filmStorage.checkPopularity(repair);
+    }
+
+    // Два лайка одного фильма могут вернуть свои агрегаты в любом порядке, и какой из них свежее, не знаем:
+    // если за время записи фильм трогал кто-то ещё, запись просто сбрасываем
+    private Film refresh(Long id, Film film, long generation) {
+        if (enabled && !cache.putIfUnchanged(id, copyOf(film), generation)) {
+            cache.invalidate(id);
+        }
+        return film;
+    }
+
+    // Вызывающий волен менять полученный фильм, поэтому ни в кэш, ни из кэша общий экземпляр не отдаём
+    private static Film copyOf(Film film) {
+        return Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .likes(film.getLikes() == null ? null : new LongHashSet(film.getLikes()))
+                .genres(film.getGenres() == null ? null : new LinkedHashSet<>(film.getGenres()))
+                .mpa(film.getMpa())
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.Collection;
+
+@Component("genreCacheStorage")
+@Primary
+@Qualifier("genreCacheStorage")
+public class CachedGenreStorage implements GenreStorage {
+    private final GenreStorage genreStorage;
+    private final ReferenceDataCache<Genre> cache;
+
+    public CachedGenreStorage(@Qualifier("genreStorage") GenreStorage genreStorage, MeterRegistry meterRegistry) {
+        this.genreStorage = genreStorage;
+        this.cache = new ReferenceDataCache<>("genres", genreStorage::getAllGenres, Genre::getId, meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        cache.reload();
+    }
+
+    @Override
+    public Genre createGenre(Genre genre) {
+        Genre created = genreStorage.createGenre(genre);
+        cache.reload();
+        return created;
+    }
+
+    @Override
+    public Genre getGenreById(Long id) {
+        return cache.get(id, genreStorage::getGenreById);
+    }
+
+    @Override
+    public Collection<Genre> getAllGenres() {
+        return cache.getAll();
+    }
+}
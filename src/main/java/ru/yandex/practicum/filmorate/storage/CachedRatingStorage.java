@@ -0,0 +1,45 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Rating;
+
+import java.util.Collection;
+
+@Component("ratingCacheStorage")
+@Primary
+@Qualifier("ratingCacheStorage")
+public class CachedRatingStorage implements RatingStorage {
+    private final RatingStorage ratingStorage;
+    private final ReferenceDataCache<Rating> cache;
+
+    public CachedRatingStorage(@Qualifier("ratingStorage") RatingStorage ratingStorage, MeterRegistry meterRegistry) {
+        this.ratingStorage = ratingStorage;
+        this.cache = new ReferenceDataCache<>("ratings", ratingStorage::getAllRatings, Rating::getId, meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        cache.reload();
+    }
+
+    @Override
+    public Rating createRating(Rating rating) {
+        Rating created = ratingStorage.createRating(rating);
+        cache.reload();
+        return created;
+    }
+
+    @Override
+    public Rating getRatingById(Long id) {
+        return cache.get(id, ratingStorage::getRatingById);
+    }
+
+    @Override
+    public Collection<Rating> getAllRatings() {
+        return cache.getAll();
+    }
+}
@@ -1,19 +1,50 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeEventResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.PopularityReport;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Film getFilmById(Long id);
 
+    boolean existsById(Long id);
+
     Collection<Film> getAllFilms();
 
+    Collection<Film> getFilmsByIds(List<Long> ids);
+
+    Collection<Film> getFilmsPage(long afterId, int limit, boolean withLikes);
+
+    void forEachFilm(Consumer<Film> consumer);
+
     Film createFilm(Film film);
 
+    List<Long> createFilms(List<Film> films);
+
     Film updateFilm(Film film);
 
     public Film userLikesFilm(Long id, Long userId);
 
     public Film deleteLikesFilm(Long id, Long userId);
+
+    LikeStatus addLike(Long id, Long userId);
+
+    LikeStatus removeLike(Long id, Long userId);
+
+    boolean hasLike(Long id, Long userId);
+
+    Map<Long, Long> getLikeCounts(List<Long> ids);
+
+    List<LikeEventResult> applyLikeEvents(List<LikeEvent> events);
+
+    Collection<Film> topPopular(int count);
+
+    PopularityReport checkPopularity(boolean repair);
 }
\ No newline at end of file
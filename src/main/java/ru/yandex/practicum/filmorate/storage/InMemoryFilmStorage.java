@@ -1,32 +1,92 @@
 package ru.yandex.practicum.filmorate.storage;
 
-import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.DuplicateException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeEventResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.PopularityReport;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Component("inMemoryFilmStorage")
-@RequiredArgsConstructor
+@Profile("in-memory")
+@Qualifier("filmStorage")
 public class InMemoryFilmStorage implements FilmStorage {
     private static final Logger log = LoggerFactory.getLogger(InMemoryFilmStorage.class);
-    UserStorage userStorage;
+    private static final int LOCK_STRIPES = 64;
 
-    private final Map<Long, Film> films = new HashMap<>();
+    private final UserStorage userStorage;
+    private final GenreStorage genreStorage;
+    private final RatingStorage ratingStorage;
+    // Фильмы в карте никому не отдаются: наружу уходят копии, снятые под замком фильма
+    private final Map<Long, Film> films = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+    private final AtomicLong modifications = new AtomicLong();
+    private final StripedLock locks = new StripedLock(LOCK_STRIPES);
+    // Индекс популярности: лайки по убыванию, при равенстве id по возрастанию — тот же порядок, что в базе.
+    // Меняется под замком фильма вместе с его лайками, поэтому топ не сортирует весь каталог
+    private final NavigableSet<PopularityKey> popularity = new ConcurrentSkipListSet<>();
+
+    public InMemoryFilmStorage(@Qualifier("userStorage") UserStorage userStorage,
+                               GenreStorage genreStorage,
+                               RatingStorage ratingStorage) {
+        this.userStorage = userStorage;
+        this.genreStorage = genreStorage;
+        this.ratingStorage = ratingStorage;
+    }
 
     @Override
     public Film getFilmById(Long id) {
-        return films.get(id);
+        Film film = locks.withLock(id, () -> copyOf(films.get(id), true));
+        if (film == null) {
+            throw new NotFoundException("Такого фильма нет в списке!");
+        }
+        return film;
     }
 
     @Override
     public Collection<Film> getAllFilms() {
-        return films.values();
+        return snapshot(true);
+    }
+
+    @Override
+    public Collection<Film> getFilmsByIds(List<Long> ids) {
+        return ids.stream()
+                .map(id -> locks.withLock(id, () -> copyOf(films.get(id), true)))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public Collection<Film> getFilmsPage(long afterId, int limit, boolean withLikes) {
+        return films.keySet().stream()
+                .filter(id -> id > afterId)
+                .sorted()
+                .limit(limit)
+                .map(id -> locks.withLock(id, () -> copyOf(films.get(id), withLikes)))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public void forEachFilm(Consumer<Film> consumer) {
+        snapshot(true).forEach(consumer);
     }
 
     @Override
@@ -34,11 +94,28 @@ public class InMemoryFilmStorage implements FilmStorage {
         if (film.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
             throw new ValidationException("Дата релиза — не раньше 28 декабря 1895 года!");
         }
-        film.setId(getNextId());
+        // Как и в базе, жанры и рейтинг храним с названиями из справочников, жанры по возрастанию id
+        Film stored = copyOf(film, true);
+        stored.setMpa(film.getMpa() == null ? null : ratingStorage.getRatingById(film.getMpa().getId()));
+        stored.setGenres(resolveGenres(film.getGenres()));
+        stored.setLikes(new LongHashSet());
+        film.setId(lastId.incrementAndGet());
+        stored.setId(film.getId());
         log.debug("Валидация пройдена.");
-        films.put(film.getId(), film);
+        locks.withLock(stored.getId(), () -> {
+            films.put(stored.getId(), stored);
+            modifications.incrementAndGet();
+            return popularity.add(new PopularityKey(0, stored.getId()));
+        });
         log.debug("Фильм добавлен в список.");
-        return film;
+        return copyOf(stored, true);
+    }
+
+    @Override
+    public List<Long> createFilms(List<Film> films) {
+        return films.stream()
+                .map(film -> createFilm(film).getId())
+                .toList();
     }
 
     @Override
@@ -47,45 +124,271 @@ public class InMemoryFilmStorage implements FilmStorage {
         if (film.getId() == null) {
             throw new ValidationException("Id должен быть указан!");
         }
-        if (films.containsKey(film.getId())) {
-            if (film.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
-                throw new ValidationException("Дата релиза — не раньше 28 декабря 1895 года!");
+        if (film.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
+            throw new ValidationException("Дата релиза — не раньше 28 декабря 1895 года!");
+        }
+        return locks.withLock(film.getId(), () -> {
+            Film existing = films.get(film.getId());
+            if (existing == null) {
+                throw new NotFoundException("Такого фильма нет в списке!");
             }
-            films.put(film.getId(), film);
+            // Как и UPDATE в базе, меняем только сами поля фильма: лайки, жанры и рейтинг остаются прежними
+            Film updated = copyOf(film, false);
+            updated.setLikes(existing.getLikes());
+            updated.setGenres(existing.getGenres());
+            updated.setMpa(existing.getMpa());
+            films.put(updated.getId(), updated);
+            modifications.incrementAndGet();
             return film;
-        } else throw new NotFoundException("Такого фильма нет в списке!");
+        });
     }
 
     public Film userLikesFilm(Long id, Long userId) {
-        Film film = getFilmById(id);
-        if (userStorage.getUserById(userId) == null) {
+        if (!userStorage.existsById(userId)) {
             throw new NotFoundException("Такого юзера нет в списке!");
         }
-        if (film == null) {
-            throw new NotFoundException("Такого фильма нет в списке!");
-        }
-        film.getLikes().add(userId);
-        return film;
+        return locks.withLock(id, () -> {
+            Film film = getExisting(id);
+            if (!like(film, userId)) {
+                throw new DuplicateException("Пользователь уже поставил лайк этому фильму!");
+            }
+            return copyOf(film, true);
+        });
     }
 
     public Film deleteLikesFilm(Long id, Long userId) {
-        if (userStorage.getUserById(userId) == null) {
+        if (!userStorage.existsById(userId)) {
             throw new NotFoundException("Такого юзера нет!");
         }
-        Film film = getFilmById(id);
+        return locks.withLock(id, () -> {
+            Film film = getExisting(id);
+            unlike(film, userId);
+            return copyOf(film, true);
+        });
+    }
+
+    @Override
+    public LikeStatus addLike(Long id, Long userId) {
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Такого юзера нет в списке!");
+        }
+        return locks.withLock(id, () -> {
+            Film film = getExisting(id);
+            if (!like(film, userId)) {
+                throw new DuplicateException("Пользователь уже поставил лайк этому фильму!");
+            }
+            return new LikeStatus(id, userId, true, film.getLikes().size());
+        });
+    }
+
+    @Override
+    public LikeStatus removeLike(Long id, Long userId) {
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Такого юзера нет!");
+        }
+        return locks.withLock(id, () -> {
+            Film film = getExisting(id);
+            unlike(film, userId);
+            return new LikeStatus(id, userId, false, film.getLikes().size());
+        });
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return films.containsKey(id);
+    }
+
+    @Override
+    public boolean hasLike(Long id, Long userId) {
+        return locks.withLock(id, () -> {
+            Film film = films.get(id);
+            return film != null && film.getLikes().contains(userId.longValue());
+        });
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts(List<Long> ids) {
+        Map<Long, Long> counts = new HashMap<>();
+        for (Long id : ids) {
+            Long count = locks.withLock(id, () -> {
+                Film film = films.get(id);
+                return film == null ? null : (long) film.getLikes().size();
+            });
+            if (count != null) {
+                counts.put(id, count);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public List<LikeEventResult> applyLikeEvents(List<LikeEvent> events) {
+        List<LikeEventResult> results = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            LikeEvent event = events.get(i);
+            LikeEventResult.Status status;
+            if (event.getFilmId() == null || event.getUserId() == null || event.getOp() == null) {
+                status = LikeEventResult.Status.INVALID;
+            } else if (!films.containsKey(event.getFilmId())) {
+                status = LikeEventResult.Status.FILM_NOT_FOUND;
+            } else if (!userStorage.existsById(event.getUserId())) {
+                status = LikeEventResult.Status.USER_NOT_FOUND;
+            } else {
+                status = locks.withLock(event.getFilmId(), () -> {
+                    Film film = films.get(event.getFilmId());
+                    if (event.getOp() == LikeEvent.Op.LIKE) {
+                        return like(film, event.getUserId())
+                                ? LikeEventResult.Status.APPLIED : LikeEventResult.Status.DUPLICATE;
+                    }
+                    return unlike(film, event.getUserId())
+                            ? LikeEventResult.Status.APPLIED : LikeEventResult.Status.NOT_LIKED;
+                });
+            }
+            results.add(new LikeEventResult(i, event.getFilmId(), event.getUserId(), status));
+        }
+        return results;
+    }
+
+    @Override
+    public Collection<Film> topPopular(int count) {
+        List<Film> top = new ArrayList<>(Math.min(count, films.size()));
+        Set<Long> seen = new HashSet<>();
+        for (PopularityKey key : popularity) {
+            if (top.size() >= count) {
+                break;
+            }
+            // Во время перестановки фильм ненадолго встречается дважды: новый ключ уже добавлен, старый ещё нет
+            if (seen.add(key.filmId())) {
+                Film film = locks.withLock(key.filmId(), () -> copyOf(films.get(key.filmId()), true));
+                if (film != null) {
+                    top.add(film);
+                }
+            }
+        }
+        return top;
+    }
+
+    @Override
+    public PopularityReport checkPopularity(boolean repair) {
+        // Сверяем индекс популярности со списками лайков; индекс группируем один раз, а не ищем по нему для каждого фильма
+        Map<Long, List<PopularityKey>> indexed = popularity.stream()
+                .collect(Collectors.groupingBy(PopularityKey::filmId));
+        List<PopularityReport.Mismatch> mismatches = new ArrayList<>();
+        for (Long id : films.keySet()) {
+            locks.withLock(id, () -> {
+                long actual = films.get(id).getLikes().size();
+                PopularityKey expected = new PopularityKey(actual, id);
+                List<PopularityKey> keys = indexed.getOrDefault(id, List.of());
+                boolean stale = keys.stream().anyMatch(key -> !key.equals(expected) && popularity.contains(key));
+                if (!popularity.contains(expected) || stale) {
+                    mismatches.add(new PopularityReport.Mismatch(id, keys.isEmpty() ? null : keys.get(0).likes(), actual));
+                    if (repair) {
+                        keys.stream().filter(key -> !key.equals(expected)).forEach(popularity::remove);
+                        popularity.add(expected);
+                    }
+                }
+                return null;
+            });
+        }
+        return PopularityReport.builder()
+                .checked(films.size())
+                .consistent(mismatches.isEmpty())
+                .repaired(repair && !mismatches.isEmpty())
+                .mismatches(mismatches)
+                .build();
+    }
+
+    long modifications() {
+        return modifications.get();
+    }
+
+    void restore(Collection<Film> restored) {
+        films.clear();
+        popularity.clear();
+        for (Film film : restored) {
+            Film stored = copyOf(film, true);
+            films.put(stored.getId(), stored);
+            popularity.add(new PopularityKey(stored.getLikes().size(), stored.getId()));
+            lastId.accumulateAndGet(stored.getId(), Math::max);
+        }
+    }
+
+    // like, unlike и getExisting вызываются под замком фильма
+    private boolean like(Film film, long userId) {
+        if (!film.getLikes().add(userId)) {
+            return false;
+        }
+        reindex(film.getId(), film.getLikes().size() - 1, film.getLikes().size());
+        return true;
+    }
+
+    private boolean unlike(Film film, long userId) {
+        if (!film.getLikes().remove(userId)) {
+            return false;
+        }
+        reindex(film.getId(), film.getLikes().size() + 1, film.getLikes().size());
+        return true;
+    }
+
+    private void reindex(long filmId, long oldLikes, long newLikes) {
+        popularity.add(new PopularityKey(newLikes, filmId));
+        popularity.remove(new PopularityKey(oldLikes, filmId));
+        modifications.incrementAndGet();
+    }
+
+    private Film getExisting(Long id) {
+        Film film = films.get(id);
         if (film == null) {
             throw new NotFoundException("Такого фильма нет в списке!");
         }
-        film.getLikes().remove(userId);
         return film;
     }
 
-    private Long getNextId() {
-        long currentMaxId = films.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
+    private Set<Genre> resolveGenres(Set<Genre> genres) {
+        if (genres == null) {
+            return new LinkedHashSet<>();
+        }
+        return genres.stream()
+                .map(Genre::getId)
+                .distinct()
+                .sorted()
+                .map(genreStorage::getGenreById)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private List<Film> snapshot(boolean withLikes) {
+        return films.keySet().stream()
+                .sorted()
+                .map(id -> locks.withLock(id, () -> copyOf(films.get(id), withLikes)))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private Film copyOf(Film film, boolean withLikes) {
+        if (film == null) {
+            return null;
+        }
+        return Film.builder()
+                .id(film.getId())
+                .name(film.getName())
+                .description(film.getDescription())
+                .releaseDate(film.getReleaseDate())
+                .duration(film.getDuration())
+                .likes(withLikes ? copyIds(film.getLikes()) : null)
+                .genres(film.getGenres() == null ? new LinkedHashSet<>() : new LinkedHashSet<>(film.getGenres()))
+                .mpa(film.getMpa())
+                .build();
+    }
+
+    private LongHashSet copyIds(LongHashSet ids) {
+        return ids == null ? new LongHashSet() : new LongHashSet(ids);
+    }
+
+    private record PopularityKey(long likes, long filmId) implements Comparable<PopularityKey> {
+        @Override
+        public int compareTo(PopularityKey other) {
+            int byLikes = Long.compare(other.likes, likes);
+            return byLikes != 0 ? byLikes : Long.compare(filmId, other.filmId);
+        }
     }
 }
@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component("genreInMemoryStorage")
+@Profile("in-memory")
+@Qualifier("genreStorage")
+public class InMemoryGenreStorage implements GenreStorage {
+    // Тот же справочник, что заливает data.sql, с теми же id
+    private static final List<String> DEFAULT_NAMES = List.of("Комедия", "Драма", "Мультфильм", "Триллер", "Документальный", "Боевик");
+
+    private final Map<Long, Genre> genres = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+    private final AtomicLong modifications = new AtomicLong();
+
+    public InMemoryGenreStorage() {
+        DEFAULT_NAMES.forEach(name -> createGenre(new Genre(null, name)));
+    }
+
+    @Override
+    public Genre createGenre(Genre genre) {
+        genre.setId(lastId.incrementAndGet());
+        genres.put(genre.getId(), new Genre(genre.getId(), genre.getName()));
+        modifications.incrementAndGet();
+        return genre;
+    }
+
+    long modifications() {
+        return modifications.get();
+    }
+
+    void restore(Collection<Genre> restored) {
+        genres.clear();
+        for (Genre genre : restored) {
+            genres.put(genre.getId(), new Genre(genre.getId(), genre.getName()));
+            lastId.accumulateAndGet(genre.getId(), Math::max);
+        }
+    }
+
+    @Override
+    public Genre getGenreById(Long id) {
+        Genre genre = genres.get(id);
+        if (genre == null) {
+            throw new NotFoundException("Такого жанра нет!");
+        }
+        return new Genre(genre.getId(), genre.getName());
+    }
+
+    @Override
+    public Collection<Genre> getAllGenres() {
+        return genres.values().stream()
+                .sorted(Comparator.comparing(Genre::getId))
+                .map(genre -> new Genre(genre.getId(), genre.getName()))
+                .toList();
+    }
+}
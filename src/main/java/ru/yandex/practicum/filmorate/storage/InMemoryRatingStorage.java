@@ -0,0 +1,67 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Rating;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component("ratingInMemoryStorage")
+@Profile("in-memory")
+@Qualifier("ratingStorage")
+public class InMemoryRatingStorage implements RatingStorage {
+    // Тот же справочник, что заливает data.sql, с теми же id
+    private static final List<String> DEFAULT_NAMES = List.of("G", "PG", "PG-13", "R", "NC-17");
+
+    private final Map<Long, Rating> ratings = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+    private final AtomicLong modifications = new AtomicLong();
+
+    public InMemoryRatingStorage() {
+        DEFAULT_NAMES.forEach(name -> createRating(new Rating(null, name)));
+    }
+
+    @Override
+    public Rating createRating(Rating rating) {
+        rating.setId(lastId.incrementAndGet());
+        ratings.put(rating.getId(), new Rating(rating.getId(), rating.getName()));
+        modifications.incrementAndGet();
+        return rating;
+    }
+
+    long modifications() {
+        return modifications.get();
+    }
+
+    void restore(Collection<Rating> restored) {
+        ratings.clear();
+        for (Rating rating : restored) {
+            ratings.put(rating.getId(), new Rating(rating.getId(), rating.getName()));
+            lastId.accumulateAndGet(rating.getId(), Math::max);
+        }
+    }
+
+    @Override
+    public Rating getRatingById(Long id) {
+        Rating rating = ratings.get(id);
+        if (rating == null) {
+            throw new NotFoundException("Такого рейтинга нет!");
+        }
+        return new Rating(rating.getId(), rating.getName());
+    }
+
+    @Override
+    public Collection<Rating> getAllRatings() {
+        return ratings.values().stream()
+                .sorted(Comparator.comparing(Rating::getId))
+                .map(rating -> new Rating(rating.getId(), rating.getName()))
+                .toList();
+    }
+}
@@ -0,0 +1,316 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Двоичный снимок хранилищ в памяти: при старте поднимается из файла, дальше в фоне переписывается,
+// если с прошлой записи что-то поменялось. Формат (big-endian):
+//   int magic 'FMS1', int версия
+//   рейтинги и жанры: int n, затем n раз {long id, строка}
+//   юзеры: int n, затем n раз {long id, строка email, строка login, строка name, long birthday, int k, k long друзей}
+//   фильмы: int n, затем n раз {long id, строка name, строка description, long releaseDate, int duration,
+//           long mpaId, int g, g long жанров, int k, k long лайков}
+// Строка — int длина в байтах UTF-8 и сами байты, -1 вместо null. Даты — epochDay, Long.MIN_VALUE вместо null.
+// От каждого хранилища в памяти снимку нужны два пакетных метода. modifications() — счётчик изменений,
+// по нему видно, что с прошлой записи ничего не поменялось и переписывать файл незачем. restore(...) заменяет
+// содержимое хранилища восстановленным и двигает счётчик id; вызывается только при старте, до первых запросов
+@Component
+@Profile("in-memory")
+@ConditionalOnProperty(name = "filmorate.snapshot.enabled", havingValue = "true", matchIfMissing = true)
+public class InMemorySnapshotStore {
+    private static final Logger log = LoggerFactory.getLogger(InMemorySnapshotStore.class);
+    static final int MAGIC = 0x464D5331;
+    static final int VERSION = 1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final long NO_RATING = 0;
+
+    private final InMemoryFilmStorage filmStorage;
+    private final InMemoryUserStorage userStorage;
+    private final InMemoryGenreStorage genreStorage;
+    private final InMemoryRatingStorage ratingStorage;
+    private final CachedGenreStorage genreCache;
+    private final CachedRatingStorage ratingCache;
+    private final Path path;
+    private final Duration interval;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "filmorate-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long savedModifications = -1;
+
+    public InMemorySnapshotStore(InMemoryFilmStorage filmStorage,
+                                 InMemoryUserStorage userStorage,
+                                 InMemoryGenreStorage genreStorage,
+                                 InMemoryRatingStorage ratingStorage,
+                                 CachedGenreStorage genreCache,
+                                 CachedRatingStorage ratingCache,
+                                 @Value("${filmorate.snapshot.path:./db/filmorate-snapshot.bin}") Path path,
+                                 @Value("${filmorate.snapshot.interval:1m}") Duration interval) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.genreStorage = genreStorage;
+        this.ratingStorage = ratingStorage;
+        this.genreCache = genreCache;
+        this.ratingCache = ratingCache;
+        this.path = path;
+        this.interval = interval;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (restore()) {
+            // Кэши справочников успели загрузиться из пустых хранилищ до восстановления
+            genreCache.load();
+            ratingCache.load();
+        }
+        savedModifications = modifications();
+        scheduler.scheduleWithFixedDelay(this::saveIfChanged, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(interval.toMillis(), TimeUnit.MILLISECONDS);
+        saveIfChanged();
+    }
+
+    // Пишет во временный файл рядом и переименовывает его поверх старого: обрыв посреди записи
+    // оставляет прежний снимок целым. Каждая запись копируется под своим замком, так что снимок
+    // согласован по каждому фильму и юзеру, но не по всему хранилищу разом
+    public synchronized void save() {
+        long modifications = modifications();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel),
+                        1 << 16));
+                write(out);
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать снимок " + path, e);
+        }
+        savedModifications = modifications;
+        log.debug("Снимок записан в {}.", path);
+    }
+
+    // Возвращает false, если снимка нет или он не читается: тогда хранилища остаются как есть
+    public synchronized boolean restore() {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                log.warn("Файл {} не похож на снимок, стартуем без него.", path);
+                return false;
+            }
+            read(buffer);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Не удалось прочитать снимок {}, стартуем без него.", path, e);
+            return false;
+        }
+        log.info("Хранилища восстановлены из снимка {}.", path);
+        return true;
+    }
+
+    private void saveIfChanged() {
+        try {
+            if (modifications() != savedModifications) {
+                save();
+            }
+        } catch (RuntimeException e) {
+            // Упавшая задача в ScheduledExecutorService больше не перезапускается
+            log.warn("Снимок не записан.", e);
+        }
+    }
+
+    private long modifications() {
+        return filmStorage.modifications() + userStorage.modifications()
+                + genreStorage.modifications() + ratingStorage.modifications();
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+
+        Collection<Rating> ratings = ratingStorage.getAllRatings();
+        out.writeInt(ratings.size());
+        for (Rating rating : ratings) {
+            out.writeLong(rating.getId());
+            writeString(out, rating.getName());
+        }
+
+        Collection<Genre> genres = genreStorage.getAllGenres();
+        out.writeInt(genres.size());
+        for (Genre genre : genres) {
+            out.writeLong(genre.getId());
+            writeString(out, genre.getName());
+        }
+
+        Collection<User> users = userStorage.getAllUsers();
+        out.writeInt(users.size());
+        for (User user : users) {
+            out.writeLong(user.getId());
+            writeString(out, user.getEmail());
+            writeString(out, user.getLogin());
+            writeString(out, user.getName());
+            out.writeLong(user.getBirthday() == null ? NO_DATE : user.getBirthday().toEpochDay());
+            writeIds(out, user.getFriends());
+        }
+
+        Collection<Film> films = filmStorage.getAllFilms();
+        out.writeInt(films.size());
+        for (Film film : films) {
+            out.writeLong(film.getId());
+            writeString(out, film.getName());
+            writeString(out, film.getDescription());
+            out.writeLong(film.getReleaseDate() == null ? NO_DATE : film.getReleaseDate().toEpochDay());
+            out.writeInt(film.getDuration());
+            out.writeLong(film.getMpa() == null ? NO_RATING : film.getMpa().getId());
+            Set<Genre> filmGenres = film.getGenres() == null ? Set.of() : film.getGenres();
+            out.writeInt(filmGenres.size());
+            for (Genre genre : filmGenres) {
+                out.writeLong(genre.getId());
+            }
+            writeIds(out, film.getLikes());
+        }
+    }
+
+    private void read(ByteBuffer in) {
+        Map<Long, Rating> ratings = new LinkedHashMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            long id = in.getLong();
+            ratings.put(id, new Rating(id, readString(in)));
+        }
+
+        Map<Long, Genre> genres = new LinkedHashMap<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            long id = in.getLong();
+            genres.put(id, new Genre(id, readString(in)));
+        }
+
+        List<User> users = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            users.add(User.builder()
+                    .id(in.getLong())
+                    .email(readString(in))
+                    .login(readString(in))
+                    .name(readString(in))
+                    .birthday(readDate(in))
+                    .friends(readIds(in))
+                    .build());
+        }
+
+        List<Film> films = new ArrayList<>();
+        for (int i = in.getInt(); i > 0; i--) {
+            Film film = Film.builder()
+                    .id(in.getLong())
+                    .name(readString(in))
+                    .description(readString(in))
+                    .releaseDate(readDate(in))
+                    .duration(in.getInt())
+                    .build();
+            long mpaId = in.getLong();
+            film.setMpa(mpaId == NO_RATING ? null : ratings.get(mpaId));
+            Set<Genre> filmGenres = new LinkedHashSet<>();
+            for (int g = in.getInt(); g > 0; g--) {
+                filmGenres.add(genres.get(in.getLong()));
+            }
+            film.setGenres(filmGenres);
+            film.setLikes(readIds(in));
+            films.add(film);
+        }
+
+        // Файл прочитан целиком — только теперь трогаем хранилища, битый снимок их не испортит
+        ratingStorage.restore(ratings.values());
+        genreStorage.restore(genres.values());
+        userStorage.restore(users);
+        filmStorage.restore(films);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static void writeIds(DataOutputStream out, LongHashSet ids) throws IOException {
+        if (ids == null) {
+            out.writeInt(0);
+            return;
+        }
+        long[] values = ids.toLongArray();
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static LongHashSet readIds(ByteBuffer in) {
+        int count = in.getInt();
+        LongHashSet ids = new LongHashSet(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(in.getLong());
+        }
+        return ids;
+    }
+}
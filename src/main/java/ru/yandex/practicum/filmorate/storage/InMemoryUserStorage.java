@@ -2,36 +2,76 @@ package ru.yandex.practicum.filmorate.storage;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
 import ru.yandex.practicum.filmorate.model.User;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Component("userInMemoryStorage")
+@Profile("in-memory")
+@Qualifier("userStorage")
 public class InMemoryUserStorage implements UserStorage {
     private static final Logger log = LoggerFactory.getLogger(InMemoryUserStorage.class);
-    private final Map<Long, User> users = new HashMap<>();
+    private static final int LOCK_STRIPES = 64;
+
+    // Юзеры в карте никому не отдаются: наружу уходят копии, снятые под замком юзера
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final AtomicLong lastId = new AtomicLong();
+    private final AtomicLong modifications = new AtomicLong();
+    private final StripedLock locks = new StripedLock(LOCK_STRIPES);
 
     @Override
     public Collection<User> getAllUsers() {
-        return users.values();
+        return snapshot(users.keySet(), true);
+    }
+
+    @Override
+    public Collection<User> getUsersPage(long afterId, int limit, boolean withFriends) {
+        List<Long> ids = users.keySet().stream()
+                .filter(id -> id > afterId)
+                .sorted()
+                .limit(limit)
+                .toList();
+        return snapshot(ids, withFriends);
     }
 
     @Override
     public User getUserById(Long id) {
-        return users.get(id);
+        User user = locks.withLock(id, () -> copyOf(users.get(id), true));
+        if (user == null) {
+            throw new NotFoundException("Такого юзера нет в списке!");
+        }
+        return user;
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return users.containsKey(id);
+    }
+
+    @Override
+    public Set<Long> getExistingIds(Collection<Long> ids) {
+        return ids.stream()
+                .filter(users::containsKey)
+                .collect(Collectors.toSet());
     }
 
     @Override
     public User createUser(User user) {
-        user.setId(getNextId());
+        user.setId(lastId.incrementAndGet());
         log.debug("Валидация пройдена.");
         if (user.getName() == null) {
             user.setName(user.getLogin());
         }
-        users.put(user.getId(), user);
+        users.put(user.getId(), copyOf(user, true));
+        modifications.incrementAndGet();
         return user;
     }
 
@@ -40,80 +80,110 @@ public class InMemoryUserStorage implements UserStorage {
         if (user.getId() == null) {
             throw new ValidationException("Id должен быть указан!");
         }
-        User existing = users.get(user.getId());
-        if (existing == null) {
-            throw new NotFoundException("Такого пользователя нет в списке!");
-        }
-        existing.setEmail(user.getEmail());
-        existing.setLogin(user.getLogin());
-        existing.setBirthday(user.getBirthday());
-        if (user.getName() == null || user.getName().isBlank()) {
-            existing.setName(user.getLogin());
-            log.debug("Заменили имя на логин.");
-        } else {
-            existing.setName(user.getName());
-        }
-        users.put(existing.getId(), existing);
-        return existing;
+        return locks.withLock(user.getId(), () -> {
+            User existing = users.get(user.getId());
+            if (existing == null) {
+                throw new NotFoundException("Такого пользователя нет в списке!");
+            }
+            existing.setEmail(user.getEmail());
+            existing.setLogin(user.getLogin());
+            existing.setBirthday(user.getBirthday());
+            if (user.getName() == null || user.getName().isBlank()) {
+                existing.setName(user.getLogin());
+                log.debug("Заменили имя на логин.");
+            } else {
+                existing.setName(user.getName());
+            }
+            modifications.incrementAndGet();
+            return copyOf(existing, true);
+        });
     }
 
     @Override
     public User createFriendship(long id, long friendId) {
-        if (getUserById(id) == null) {
+        if (!existsById(id)) {
             throw new NotFoundException("Такого юзера нет в списке!");
         }
-        if (getUserById(friendId) == null) {
+        if (!existsById(friendId)) {
             throw new NotFoundException("Невозможно добавить в друзья несуществующего юзера!");
         }
-        getUserById(id).getFriends().add(friendId);
-        getUserById(friendId).getFriends().add(id);
-        return getUserById(id);
+        // Дружба односторонняя, как в базе: friendId попадает только в список id
+        return locks.withLock(id, () -> {
+            User user = users.get(id);
+            user.getFriends().add(friendId);
+            modifications.incrementAndGet();
+            return copyOf(user, true);
+        });
     }
 
     @Override
     public User deleteFriendship(long id, long friendId) {
-        if (getUserById(id) == null) {
+        if (!existsById(id)) {
             throw new NotFoundException("Такого юзера нет в списке!");
         }
-        if (getUserById(friendId) == null) {
+        if (!existsById(friendId)) {
             throw new NotFoundException("Удаляемого из друзья юзера нет в списке!");
         }
-        getUserById(id).getFriends().remove(friendId);
-        getUserById(friendId).getFriends().remove(id);
-        return getUserById(id);
+        return locks.withLock(id, () -> {
+            User user = users.get(id);
+            user.getFriends().remove(friendId);
+            modifications.incrementAndGet();
+            return copyOf(user, true);
+        });
     }
 
     @Override
     public Collection<User> listOfFriends(long id) {
-        if (getUserById(id) == null) {
-            throw new NotFoundException("Такого юзера нет в списке!");
-        }
-        if (getUserById(id).getFriends() == null) {
-            throw new NotFoundException("Список друзей пуст!");
-        }
-        return getUserById(id).getFriends().stream()
-                .map(friends -> getUserById(friends))
-                .collect(Collectors.toList());
+        return snapshot(getUserById(id).getFriends(), true);
     }
 
     @Override
     public Collection<User> listOfCommonFriends(Long id, Long otherId) {
+        if (!existsById(id) || !existsById(otherId)) {
+            throw new NotFoundException("Одного из юзеров нет в списке!");
+        }
         User u1 = getUserById(id);
         User u2 = getUserById(otherId);
-        if (u1 == null || u2 == null) throw new NotFoundException("Одного из юзеров нет в списке!");
-        Set<Long> friends1 = new HashSet<>(u1.getFriends()); // копия
+        Set<Long> friends1 = u1.getFriends(); // уже копия
         friends1.retainAll(u2.getFriends());
-        return friends1.stream()
-                .map(this::getUserById)
-                .collect(Collectors.toList());
-    }
-
-    private Long getNextId() {
-        long currentMaxId = users.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++currentMaxId;
+        return snapshot(friends1, true);
+    }
+
+    long modifications() {
+        return modifications.get();
+    }
+
+    void restore(Collection<User> restored) {
+        users.clear();
+        for (User user : restored) {
+            users.put(user.getId(), copyOf(user, true));
+            lastId.accumulateAndGet(user.getId(), Math::max);
+        }
+    }
+
+    private List<User> snapshot(Collection<Long> ids, boolean withFriends) {
+        return ids.stream()
+                .sorted()
+                .map(id -> locks.withLock(id, () -> copyOf(users.get(id), withFriends)))
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private User copyOf(User user, boolean withFriends) {
+        if (user == null) {
+            return null;
+        }
+        return User.builder()
+                .id(user.getId())
+                .email(user.getEmail())
+                .login(user.getLogin())
+                .name(user.getName())
+                .birthday(user.getBirthday())
+                .friends(withFriends ? copyIds(user.getFriends()) : null)
+                .build();
+    }
+
+    private LongHashSet copyIds(LongHashSet ids) {
+        return ids == null ? new LongHashSet() : new LongHashSet(ids);
     }
 }
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+public class LruCache<K, V> {
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    // Поколения ключей, поделённые между ключами как в StripedLock: растут при каждой записи и сбросе.
+    // Читатель запоминает поколение до загрузки из базы и кладёт результат, только если оно не сдвинулось.
+    // Общее поколение у разных ключей лишь изредка отменяет put, но никогда не пропускает устаревшее значение
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private long evictions;
+
+    public LruCache(int maxSize, Duration ttl) {
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    public LruCache(int maxSize, Duration ttl, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        // accessOrder = true: при чтении запись переезжает в конец, вытесняем самые давние
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (clock.getAsLong() - entry.createdAt() > ttlNanos) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized long generation(K key) {
+        return generations[stripe(key)];
+    }
+
+    public synchronized void put(K key, V value) {
+        generations[stripe(key)]++;
+        entries.put(key, new Entry<>(value, clock.getAsLong()));
+    }
+
+    // Возвращает false и ничего не кладёт, если с момента generation(key) ключ записывали или сбрасывали
+    public synchronized boolean putIfUnchanged(K key, V value, long generation) {
+        if (generations[stripe(key)] != generation) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    public synchronized void invalidate(K key) {
+        generations[stripe(key)]++;
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    private int stripe(K key) {
+        return Math.floorMod(key.hashCode(), GENERATION_STRIPES);
+    }
+
+    private record Entry<V>(V value, long createdAt) {
+    }
+}
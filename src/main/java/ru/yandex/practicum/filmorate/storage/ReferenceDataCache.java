@@ -0,0 +1,53 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class ReferenceDataCache<T> {
+    private final Supplier<Collection<T>> loader;
+    private final Function<T, Long> idExtractor;
+    private final Counter hits;
+    private final Counter misses;
+
+    // Справочники маленькие, поэтому при изменениях просто перечитываем их целиком
+    private volatile Map<Long, T> entries = Map.of();
+
+    public ReferenceDataCache(String name, Supplier<Collection<T>> loader, Function<T, Long> idExtractor,
+                              MeterRegistry meterRegistry) {
+        this.loader = loader;
+        this.idExtractor = idExtractor;
+        this.hits = Counter.builder("cache.gets").tag("cache", name).tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", name).tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    public void reload() {
+        Map<Long, T> loaded = new LinkedHashMap<>();
+        for (T value : loader.get()) {
+            loaded.put(idExtractor.apply(value), value);
+        }
+        entries = Collections.unmodifiableMap(loaded);
+    }
+
+    public T get(Long id, Function<Long, T> fallback) {
+        T value = entries.get(id);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = fallback.apply(id);
+        // Запись появилась в базе в обход кэша
+        reload();
+        return value;
+    }
+
+    public Collection<T> getAll() {
+        return new ArrayList<>(entries.values());
+    }
+}
@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Набор замков, поделённых между id: записи с разными id почти никогда не ждут друг друга,
+// а памяти уходит фиксированное число замков, а не по одному на фильм или юзера
+public class StripedLock {
+    private final ReentrantLock[] locks;
+
+    public StripedLock(int stripes) {
+        locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public <T> T withLock(long id, Supplier<T> action) {
+        ReentrantLock lock = locks[stripe(id)];
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int stripe(long id) {
+        return Math.floorMod(Long.hashCode(id), locks.length);
+    }
+}
@@ -3,12 +3,19 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.Set;
 
 public interface UserStorage {
     User getUserById(Long id);
 
+    boolean existsById(Long id);
+
+    Set<Long> getExistingIds(Collection<Long> ids);
+
     Collection<User> getAllUsers();
 
+    Collection<User> getUsersPage(long afterId, int limit, boolean withFriends);
+
     User createUser(User user);
 
     User updateUser(User user);
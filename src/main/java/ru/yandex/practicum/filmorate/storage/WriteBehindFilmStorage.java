@@ -0,0 +1,555 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.DuplicateException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeEventResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.PopularityReport;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Отложенная запись лайков: лайк и его снятие только проверяются и попадают в очередь, а в films_likes
+// уходят пакетами через applyLikeEvents раз в flush-interval. Повторные операции над одной парой
+// (фильм, юзер) схлопываются в последнюю. Чтения накладывают ещё не записанное поверх того, что вернуло хранилище.
+// Очередь ограничена capacity: сверх неё лайк пишется сразу, и клиент ждёт, как без отложенной записи
+@Component("filmWriteBehindStorage")
+@Qualifier("filmWriteBehindStorage")
+public class WriteBehindFilmStorage implements FilmStorage {
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindFilmStorage.class);
+    private static final String ALREADY_LIKED = "Пользователь уже поставил лайк этому фильму!";
+    private static final int EPOCH_STRIPES = 1024;
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    // Ожидающие записи операции по фильмам. Меняются только через compute по id фильма,
+    // поэтому постановка, схлопывание и удаление после записи для одного фильма не пересекаются.
+    // Внутри compute нет обращений к хранилищу: compute держит замок корзины, общий с чужими фильмами
+    private final Map<Long, Map<Long, Pending>> pendingByFilm = new ConcurrentHashMap<>();
+    // Порядок записи: каждая ожидающая пара лежит здесь ровно один раз
+    private final Queue<PendingKey> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    // Растёт, когда лайки фильма записаны в хранилище в обход очереди или операция ушла из ожидания.
+    // По нему постановка узнаёт, что прочитанное из хранилища до compute уже устарело
+    private final AtomicLongArray epochs = new AtomicLongArray(EPOCH_STRIPES);
+    // Счётчик лайков — сохранённый плюс поправка ожидающих операций. Пока пакет записывается и ещё
+    // не убран из ожидания, его лайки есть и там и там, поэтому счётчики читаются не во время записи
+    private final ReadWriteLock countsLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Counter overflows;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "filmorate-likes-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public WriteBehindFilmStorage(@Qualifier("filmStorage") FilmStorage filmStorage,
+                                  @Qualifier("userStorage") UserStorage userStorage,
+                                  @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                  @Value("${filmorate.likes.write-behind.capacity:100000}") int capacity,
+                                  @Value("${filmorate.likes.write-behind.batch-size:5000}") int batchSize,
+                                  @Value("${filmorate.likes.write-behind.flush-interval:200ms}") Duration flushInterval,
+                                  MeterRegistry meterRegistry) {
+        this.filmStorage = filmStorage;
+        this.userStorage = userStorage;
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.overflows = Counter.builder("likes.write.behind.overflows")
+                .description("Лайки, записанные сразу, потому что очередь была полна")
+                .register(meterRegistry);
+        Gauge.builder("likes.write.behind.pending", pendingCount, AtomicInteger::get)
+                .register(meterRegistry);
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toMillis(), flushInterval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Film getFilmById(Long id) {
+        return overlay(filmStorage.getFilmById(id));
+    }
+
+    @Override
+    public Collection<Film> getAllFilms() {
+        return overlayAll(filmStorage.getAllFilms());
+    }
+
+    @Override
+    public Collection<Film> getFilmsByIds(List<Long> ids) {
+        return overlayAll(filmStorage.getFilmsByIds(ids));
+    }
+
+    @Override
+    public Collection<Film> getFilmsPage(long afterId, int limit, boolean withLikes) {
+        return overlayAll(filmStorage.getFilmsPage(afterId, limit, withLikes));
+    }
+
+    @Override
+    public void forEachFilm(Consumer<Film> consumer) {
+        filmStorage.forEachFilm(film -> consumer.accept(overlay(film)));
+    }
+
+    @Override
+    public Film createFilm(Film film) {
+        return filmStorage.createFilm(film);
+    }
+
+    @Override
+    public List<Long> createFilms(List<Film> films) {
+        return filmStorage.createFilms(films);
+    }
+
+    @Override
+    public Film updateFilm(Film film) {
+        return filmStorage.updateFilm(film);
+    }
+
+    @Override
+    public Film userLikesFilm(Long id, Long userId) {
+        if (!enabled) {
+            return filmStorage.userLikesFilm(id, userId);
+        }
+        checkExists(id, userId);
+        if (!enqueue(id, userId, LikeEvent.Op.LIKE)) {
+            throw new DuplicateException(ALREADY_LIKED);
+        }
+        return getFilmById(id);
+    }
+
+    @Override
+    public Film deleteLikesFilm(Long id, Long userId) {
+        if (!enabled) {
+            return filmStorage.deleteLikesFilm(id, userId);
+        }
+        checkExists(id, userId);
+        enqueue(id, userId, LikeEvent.Op.UNLIKE);
+        return getFilmById(id);
+    }
+
+    @Override
+    public LikeStatus addLike(Long id, Long userId) {
+        if (!enabled) {
+            return filmStorage.addLike(id, userId);
+        }
+        checkExists(id, userId);
+        if (!enqueue(id, userId, LikeEvent.Op.LIKE)) {
+            throw new DuplicateException(ALREADY_LIKED);
+        }
+        return new LikeStatus(id, userId, true, likeCount(id));
+    }
+
+    @Override
+    public LikeStatus removeLike(Long id, Long userId) {
+        if (!enabled) {
+            return filmStorage.removeLike(id, userId);
+        }
+        checkExists(id, userId);
+        enqueue(id, userId, LikeEvent.Op.UNLIKE);
+        return new LikeStatus(id, userId, false, likeCount(id));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return filmStorage.existsById(id);
+    }
+
+    @Override
+    public boolean hasLike(Long id, Long userId) {
+        Map<Long, Pending> users = pendingByFilm.get(id);
+        Pending pending = users == null ? null : users.get(userId);
+        return pending == null ? filmStorage.hasLike(id, userId) : pending.liked();
+    }
+
+    @Override
+    public Map<Long, Long> getLikeCounts(List<Long> ids) {
+        countsLock.readLock().lock();
+        try {
+            Map<Long, Long> counts = filmStorage.getLikeCounts(ids);
+            if (!pendingByFilm.isEmpty()) {
+                counts.replaceAll((id, count) -> count + pendingDelta(id));
+            }
+            return counts;
+        } finally {
+            countsLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<LikeEventResult> applyLikeEvents(List<LikeEvent> events) {
+        // Пакет с подробными статусами пишется сразу, но после уже принятых лайков, чтобы не менять их порядок
+        flush();
+        try {
+            return filmStorage.applyLikeEvents(events);
+        } finally {
+            events.stream()
+                    .map(LikeEvent::getFilmId)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .forEach(id -> epochs.incrementAndGet(stripe(id)));
+        }
+    }
+
+    @Override
+    public Collection<Film> topPopular(int count) {
+        if (pendingByFilm.isEmpty()) {
+            return filmStorage.topPopular(count);
+        }
+        countsLock.readLock().lock();
+        try {
+            return mergePopular(count);
+        } finally {
+            countsLock.readLock().unlock();
+        }
+    }
+
+    private List<Film> mergePopular(int count) {
+        Map<Long, Long> deltas = new HashMap<>();
+        for (Long id : pendingByFilm.keySet()) {
+            long delta = pendingDelta(id);
+            if (delta != 0) {
+                deltas.put(id, delta);
+            }
+        }
+        // Фильм без поправки опускается в рейтинге только под фильмы, которые теряют лайки, поэтому запас
+        // сверх count нужен лишь на их число. Фильмы, которые лайки набирают, сравниваем по сохранённым
+        // счётчикам и собираем целиком только тех, кто вошёл в топ
+        long losing = deltas.values().stream().filter(delta -> delta < 0).count();
+        Map<Long, Film> loaded = new HashMap<>();
+        Map<Long, Long> likes = new HashMap<>();
+        for (Film film : filmStorage.topPopular((int) Math.min(Integer.MAX_VALUE, count + losing))) {
+            overlay(film);
+            loaded.put(film.getId(), film);
+            likes.put(film.getId(), (long) film.getLikes().size());
+        }
+        List<Long> gaining = deltas.entrySet().stream()
+                .filter(entry -> entry.getValue() > 0 && !loaded.containsKey(entry.getKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+        filmStorage.getLikeCounts(gaining).forEach((id, stored) -> likes.put(id, stored + deltas.get(id)));
+        List<Long> top = likes.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .toList();
+        List<Long> missing = top.stream().filter(id -> !loaded.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            getFilmsByIds(missing).forEach(film -> loaded.put(film.getId(), film));
+        }
+        return top.stream()
+                .map(loaded::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public PopularityReport checkPopularity(boolean repair) {
+        flush();
+        return filmStorage.checkPopularity(repair);
+    }
+
+    // Записывает всё, что накопилось к моменту вызова. Вызывается планировщиком, пакетной записью и при остановке
+    public synchronized void flush() {
+        while (true) {
+            List<PendingKey> keys = new ArrayList<>(batchSize);
+            List<Pending> drained = new ArrayList<>(batchSize);
+            PendingKey key;
+            while (keys.size() < batchSize && (key = queue.poll()) != null) {
+                Map<Long, Pending> users = pendingByFilm.get(key.filmId());
+                Pending pending = users == null ? null : users.get(key.userId());
+                if (pending != null && !pending.direct) {
+                    keys.add(key);
+                    drained.add(pending);
+                }
+            }
+            if (keys.isEmpty()) {
+                return;
+            }
+            List<LikeEvent> events = new ArrayList<>(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                events.add(new LikeEvent(keys.get(i).filmId(), keys.get(i).userId(), drained.get(i).op));
+            }
+            countsLock.writeLock().lock();
+            try {
+                long skipped = filmStorage.applyLikeEvents(events).stream()
+                        .filter(result -> !result.isApplied())
+                        .count();
+                if (skipped > 0) {
+                    log.debug("Из {} отложенных лайков не применено {}.", events.size(), skipped);
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    complete(keys.get(i), drained.get(i));
+                }
+            } catch (RuntimeException e) {
+                // Пары остаются в ожидании и уйдут следующей попыткой
+                queue.addAll(keys);
+                throw e;
+            } finally {
+                countsLock.writeLock().unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        if (enabled) {
+            flush();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Упавшая задача в ScheduledExecutorService больше не перезапускается
+            log.error("Не удалось записать отложенные лайки, повторим позже.", e);
+        }
+    }
+
+    // Ставит операцию в очередь и возвращает false, если пара уже в нужном состоянии.
+    // Состояние пары читается до compute, а внутри compute только сверяется: если за это время операцию пары
+    // сменили или лайки фильма записали мимо очереди, пробуем заново. Так два одинаковых лайка одной пары
+    // не пройдут оба, а под замком корзины не выполняется ни одного запроса к хранилищу
+    private boolean enqueue(long filmId, long userId, LikeEvent.Op op) {
+        boolean like = op == LikeEvent.Op.LIKE;
+        while (true) {
+            Pending observed = pendingOf(filmId, userId);
+            long epoch = epochs.get(stripe(filmId));
+            // Ожидающая операция новее хранилища; без неё смотрим пару в хранилище по первичному ключу
+            boolean liked = observed == null ? filmStorage.hasLike(filmId, userId) : observed.liked();
+            if (liked == like) {
+                if (pendingOf(filmId, userId) == observed && epochs.get(stripe(filmId)) == epoch) {
+                    return false;
+                }
+                continue;
+            }
+            Outcome[] outcome = {Outcome.RETRY};
+            Pending[] placed = {null};
+            pendingByFilm.compute(filmId, (id, users) -> {
+                Map<Long, Pending> result = users == null ? new ConcurrentHashMap<>() : users;
+                Pending current = result.get(userId);
+                if (current != observed || epochs.get(stripe(filmId)) != epoch) {
+                    return result.isEmpty() ? null : result;
+                }
+                if (current != null) {
+                    // Пара уже в ожидании — заменяем операцию на последнюю. Поверх прямой записи новая операция
+                    // встаёт в очередь, только когда та закончится, иначе очередь могла бы её обогнать
+                    Pending pending = new Pending(op, false);
+                    pending.storedLiked = current.direct ? current.liked() : current.storedLiked;
+                    result.put(userId, pending);
+                    if (current.direct) {
+                        pendingCount.incrementAndGet();
+                    }
+                    outcome[0] = Outcome.REPLACED;
+                } else if (pendingCount.incrementAndGet() > capacity) {
+                    // Противодавление: очередь полна, платит сам клиент. Пару занимаем меткой прямой записи,
+                    // чтобы параллельный лайк той же пары видел её, а саму запись делаем уже вне compute
+                    pendingCount.decrementAndGet();
+                    Pending pending = new Pending(op, true);
+                    pending.storedLiked = liked;
+                    result.put(userId, pending);
+                    placed[0] = pending;
+                    outcome[0] = Outcome.DIRECT;
+                } else {
+                    Pending pending = new Pending(op, false);
+                    pending.storedLiked = liked;
+                    result.put(userId, pending);
+                    outcome[0] = Outcome.QUEUED;
+                }
+                return result;
+            });
+            switch (outcome[0]) {
+                case RETRY:
+                    continue;
+                case QUEUED:
+                    queue.add(new PendingKey(filmId, userId));
+                    requestFlushIfFull();
+                    return true;
+                case DIRECT:
+                    return writeDirectly(filmId, userId, placed[0]);
+                default:
+                    return true;
+            }
+        }
+    }
+
+    private boolean writeDirectly(long filmId, long userId, Pending marker) {
+        overflows.increment();
+        boolean written = false;
+        boolean applied = false;
+        try {
+            applied = filmStorage.applyLikeEvents(List.of(new LikeEvent(filmId, userId, marker.op))).get(0)
+                    .isApplied();
+            written = true;
+        } finally {
+            boolean writtenState = written;
+            boolean[] replaced = {false};
+            pendingByFilm.computeIfPresent(filmId, (id, users) -> {
+                Pending newer = users.get(userId);
+                if (!users.remove(userId, marker) && newer != null) {
+                    newer.storedLiked = writtenState ? marker.liked() : marker.storedLiked;
+                    replaced[0] = true;
+                }
+                epochs.incrementAndGet(stripe(filmId));
+                return users.isEmpty() ? null : users;
+            });
+            if (replaced[0]) {
+                queue.add(new PendingKey(filmId, userId));
+                requestFlushIfFull();
+            }
+        }
+        return applied;
+    }
+
+    // Набрался целый пакет — пишем, не дожидаясь интервала. Сравнение не на точное равенство: параллельные
+    // постановки и записи могут перешагнуть порог, а флаг не даёт поставить больше одной внеочередной записи
+    private void requestFlushIfFull() {
+        if (pendingCount.get() < batchSize || !flushRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.execute(() -> {
+                try {
+                    flushQuietly();
+                } finally {
+                    flushRequested.set(false);
+                    requestFlushIfFull();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Приложение останавливается, остаток запишет close()
+            flushRequested.set(false);
+        }
+    }
+
+    // Операция записана: убираем её, если за время записи пару не поменяли, иначе возвращаем пару в очередь
+    private void complete(PendingKey key, Pending written) {
+        boolean[] changed = {false};
+        pendingByFilm.computeIfPresent(key.filmId(), (id, users) -> {
+            Pending newer = users.get(key.userId());
+            if (users.remove(key.userId(), written)) {
+                pendingCount.decrementAndGet();
+                epochs.incrementAndGet(stripe(key.filmId()));
+            } else if (newer != null) {
+                // В хранилище теперь записанная операция, поправка новой считается уже от неё
+                newer.storedLiked = written.liked();
+                changed[0] = true;
+            }
+            return users.isEmpty() ? null : users;
+        });
+        if (changed[0]) {
+            queue.add(key);
+        }
+    }
+
+    private Pending pendingOf(long filmId, long userId) {
+        Map<Long, Pending> users = pendingByFilm.get(filmId);
+        return users == null ? null : users.get(userId);
+    }
+
+    private static int stripe(long filmId) {
+        return Math.floorMod(Long.hashCode(filmId), EPOCH_STRIPES);
+    }
+
+    private void checkExists(Long id, Long userId) {
+        if (!filmStorage.existsById(id)) {
+            throw new NotFoundException("Такого фильма нет в списке!");
+        }
+        if (!userStorage.existsById(userId)) {
+            throw new NotFoundException("Такого юзера нет в списке!");
+        }
+    }
+
+    private long likeCount(Long id) {
+        return getLikeCounts(List.of(id)).getOrDefault(id, 0L);
+    }
+
+    // На сколько ожидающие операции меняют сохранённый счётчик лайков фильма
+    private long pendingDelta(Long id) {
+        Map<Long, Pending> users = pendingByFilm.get(id);
+        if (users == null) {
+            return 0;
+        }
+        long delta = 0;
+        for (Pending pending : users.values()) {
+            // Прямая запись попадёт в сохранённый счётчик сама, как без отложенной записи
+            if (!pending.direct) {
+                delta += (pending.liked() ? 1 : 0) - (pending.storedLiked ? 1 : 0);
+            }
+        }
+        return delta;
+    }
+
+    private Collection<Film> overlayAll(Collection<Film> films) {
+        if (!pendingByFilm.isEmpty()) {
+            films.forEach(this::overlay);
+        }
+        return films;
+    }
+
+    // Хранилища отдают свежие копии, поэтому лайки можно править прямо в них
+    private Film overlay(Film film) {
+        if (film == null || film.getLikes() == null) {
+            return film;
+        }
+        Map<Long, Pending> users = pendingByFilm.get(film.getId());
+        if (users == null) {
+            return film;
+        }
+        users.forEach((userId, pending) -> {
+            if (pending.liked()) {
+                film.getLikes().add(userId);
+            } else {
+                film.getLikes().remove(userId);
+            }
+        });
+        return film;
+    }
+
+    private record PendingKey(long filmId, long userId) {
+    }
+
+    private enum Outcome { RETRY, QUEUED, REPLACED, DIRECT }
+
+    // Сравнивается по ссылке: так запись отличает «свою» операцию от поставленной поверх неё позже.
+    // storedLiked — стоит ли лайк в хранилище; меняется только внутри compute по фильму.
+    // direct — метка операции, которую клиент прямо сейчас пишет сам: её нет ни в очереди, ни в pendingCount
+    private static final class Pending {
+        private final LikeEvent.Op op;
+        private final boolean direct;
+        private volatile boolean storedLiked;
+
+        private Pending(LikeEvent.Op op, boolean direct) {
+            this.op = op;
+            this.direct = direct;
+        }
+
+        private boolean liked() {
+            return op == LikeEvent.Op.LIKE;
+        }
+    }
+}
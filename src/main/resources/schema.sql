@@ -48,4 +48,51 @@ CREATE TABLE IF NOT EXISTS rating (
 CREATE TABLE IF NOT EXISTS films_rating (
     films_id BIGINT REFERENCES films(id),
     rating_id BIGINT REFERENCES rating(id)
-);
\ No newline at end of file
+);
+
+CREATE TABLE IF NOT EXISTS schema_version (
+    version INT PRIMARY KEY,
+    description VARCHAR(200) NOT NULL,
+    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- V1: счётчик лайков хранится в films и обновляется вместе с films_likes
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count BIGINT DEFAULT 0 NOT NULL;
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, id);
+UPDATE films f SET like_count = (SELECT COUNT(*) FROM films_likes fl WHERE fl.films_id = f.id)
+WHERE NOT EXISTS (SELECT 1 FROM schema_version WHERE version = 1);
+MERGE INTO schema_version (version, description) KEY (version) VALUES (1, 'films.like_count with backfill');
+
+-- V2: первичные ключи связующих таблиц и индексы для обратных направлений
+DELETE FROM films_likes
+WHERE (films_id IS NULL OR users_id IS NULL
+    OR _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM films_likes GROUP BY films_id, users_id))
+AND NOT EXISTS (SELECT 1 FROM schema_version WHERE version = 2);
+DELETE FROM films_genre
+WHERE (films_id IS NULL OR genre_id IS NULL
+    OR _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM films_genre GROUP BY films_id, genre_id))
+AND NOT EXISTS (SELECT 1 FROM schema_version WHERE version = 2);
+DELETE FROM films_rating
+WHERE (films_id IS NULL OR rating_id IS NULL
+    OR _ROWID_ NOT IN (SELECT MIN(_ROWID_) FROM films_rating GROUP BY films_id))
+AND NOT EXISTS (SELECT 1 FROM schema_version WHERE version = 2);
+UPDATE films f SET like_count = (SELECT COUNT(*) FROM films_likes fl WHERE fl.films_id = f.id)
+WHERE NOT EXISTS (SELECT 1 FROM schema_version WHERE version = 2);
+
+ALTER TABLE films_likes ALTER COLUMN films_id SET NOT NULL;
+ALTER TABLE films_likes ALTER COLUMN users_id SET NOT NULL;
+ALTER TABLE films_likes ADD CONSTRAINT IF NOT EXISTS films_likes_pk PRIMARY KEY (films_id, users_id);
+CREATE INDEX IF NOT EXISTS films_likes_users_idx ON films_likes (users_id);
+
+ALTER TABLE films_genre ALTER COLUMN films_id SET NOT NULL;
+ALTER TABLE films_genre ALTER COLUMN genre_id SET NOT NULL;
+ALTER TABLE films_genre ADD CONSTRAINT IF NOT EXISTS films_genre_pk PRIMARY KEY (films_id, genre_id);
+CREATE INDEX IF NOT EXISTS films_genre_genre_idx ON films_genre (genre_id);
+
+ALTER TABLE films_rating ALTER COLUMN films_id SET NOT NULL;
+ALTER TABLE films_rating ALTER COLUMN rating_id SET NOT NULL;
+ALTER TABLE films_rating ADD CONSTRAINT IF NOT EXISTS films_rating_pk PRIMARY KEY (films_id);
+CREATE INDEX IF NOT EXISTS films_rating_rating_idx ON films_rating (rating_id);
+
+CREATE INDEX IF NOT EXISTS friends_receiver_idx ON friends (receiverUser_id, senderUser_id);
+MERGE INTO schema_version (version, description) KEY (version) VALUES (2, 'join table keys and reverse indexes');
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.FilmHydrator;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.RatingDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.*;
+
+import java.time.Duration;
+
+// Хранилища без Spring-контекста: база H2 в памяти со схемой из schema.sql или хранилища в памяти
+public final class Backend implements AutoCloseable {
+    public static final String DB = "db";
+    public static final String IN_MEMORY = "in-memory";
+
+    public final FilmStorage films;
+    public final UserStorage users;
+    public final GenreStorage genres;
+    public final RatingStorage ratings;
+    private final EmbeddedDatabase database;
+
+    private Backend(FilmStorage films, UserStorage users, GenreStorage genres, RatingStorage ratings,
+                    EmbeddedDatabase database) {
+        this.films = films;
+        this.users = users;
+        this.genres = genres;
+        this.ratings = ratings;
+        this.database = database;
+    }
+
+    public static Backend create(String name) {
+        return create(name, FilmHydrator.Mode.BATCH);
+    }
+
+    public static Backend create(String name, FilmHydrator.Mode hydration) {
+        if (IN_MEMORY.equals(name)) {
+            InMemoryUserStorage users = new InMemoryUserStorage();
+            InMemoryGenreStorage genres = new InMemoryGenreStorage();
+            InMemoryRatingStorage ratings = new InMemoryRatingStorage();
+            return new Backend(new InMemoryFilmStorage(users, genres, ratings), users, genres, ratings, null);
+        }
+        if (!DB.equals(name)) {
+            throw new IllegalArgumentException("Неизвестное хранилище: " + name);
+        }
+        EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScripts("schema.sql", "data.sql")
+                .build();
+        JdbcTemplate jdbc = new JdbcTemplate(database);
+        UserDbStorage users = new UserDbStorage(jdbc);
+        GenreDbStorage genres = new GenreDbStorage(jdbc);
+        RatingDbStorage ratings = new RatingDbStorage(jdbc);
+        return new Backend(new FilmDbStorage(jdbc, users, genres, ratings,
+                new FilmHydrator(hydration, 8, Duration.ofSeconds(30))), users, genres, ratings, database);
+    }
+
+    // Тот же кэш, что стоит перед хранилищем в приложении
+    public FilmStorage cached(boolean enabled) {
+        return new CachedFilmStorage(films, enabled, 10_000, Duration.ofMinutes(5), new SimpleMeterRegistry());
+    }
+
+    @Override
+    public void close() {
+        if (database != null) {
+            database.shutdown();
+        }
+    }
+}
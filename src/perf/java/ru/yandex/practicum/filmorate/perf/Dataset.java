@@ -0,0 +1,112 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Равномерный набор данных для бенчмарков: одинаковый seed даёт одинаковые данные на любом хранилище
+public final class Dataset {
+    public static final long SEED = 42;
+    private static final int FILM_BATCH = 1_000;
+    private static final int LIKE_BATCH = 10_000;
+    private static final int GENRES = 6;
+    private static final int RATINGS = 5;
+
+    public final List<Long> userIds;
+    public final List<Long> filmIds;
+
+    private Dataset(List<Long> userIds, List<Long> filmIds) {
+        this.userIds = userIds;
+        this.filmIds = filmIds;
+    }
+
+    public static Dataset fill(Backend backend, int users, int films, int likesPerFilm, int friendsPerUser) {
+        Random random = new Random(SEED);
+        List<Long> userIds = createUsers(backend.users, users);
+        List<Long> filmIds = createFilms(backend.films, films, random);
+        addLikes(backend.films, filmIds, userIds, Math.min(likesPerFilm, users), random);
+        addFriends(backend.users, userIds, Math.min(friendsPerUser, users - 1), random);
+        return new Dataset(userIds, filmIds);
+    }
+
+    private static List<Long> createUsers(UserStorage storage, int count) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@yandex.com");
+            user.setLogin("user" + i);
+            user.setName("Пользователь " + i);
+            user.setBirthday(LocalDate.of(1970, 1, 1).plusDays(i % 15_000));
+            ids.add(storage.createUser(user).getId());
+        }
+        return ids;
+    }
+
+    private static List<Long> createFilms(FilmStorage storage, int count, Random random) {
+        List<Long> ids = new ArrayList<>(count);
+        List<Film> batch = new ArrayList<>(FILM_BATCH);
+        for (int i = 0; i < count; i++) {
+            Film film = new Film();
+            film.setName("Фильм " + i);
+            film.setDescription("Описание фильма " + i);
+            film.setReleaseDate(LocalDate.of(1960, 1, 1).plusDays(random.nextInt(20_000)));
+            film.setDuration(60 + random.nextInt(120));
+            film.setMpa(new Rating(1L + random.nextInt(RATINGS), null));
+            Set<Genre> genres = new LinkedHashSet<>();
+            for (int g = 1 + random.nextInt(3); g > 0; g--) {
+                genres.add(new Genre(1L + random.nextInt(GENRES), null));
+            }
+            film.setGenres(genres);
+            batch.add(film);
+            if (batch.size() == FILM_BATCH) {
+                ids.addAll(storage.createFilms(batch));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            ids.addAll(storage.createFilms(batch));
+        }
+        return ids;
+    }
+
+    // Каждому фильму — likesPerFilm разных юзеров подряд с случайного места в списке
+    private static void addLikes(FilmStorage storage, List<Long> filmIds, List<Long> userIds, int likesPerFilm,
+                                 Random random) {
+        List<LikeEvent> batch = new ArrayList<>(LIKE_BATCH);
+        for (Long filmId : filmIds) {
+            int start = random.nextInt(userIds.size());
+            for (int k = 0; k < likesPerFilm; k++) {
+                batch.add(new LikeEvent(filmId, userIds.get((start + k) % userIds.size()), LikeEvent.Op.LIKE));
+                if (batch.size() == LIKE_BATCH) {
+                    storage.applyLikeEvents(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            storage.applyLikeEvents(batch);
+        }
+    }
+
+    // Сдвиг от самого юзера не даёт дружить с собой и не повторяет друзей
+    private static void addFriends(UserStorage storage, List<Long> userIds, int friendsPerUser, Random random) {
+        int size = userIds.size();
+        for (int i = 0; i < size; i++) {
+            int offset = random.nextInt(size - friendsPerUser);
+            for (int k = 0; k < friendsPerUser; k++) {
+                storage.createFriendship(userIds.get(i), userIds.get((i + 1 + offset + k) % size));
+            }
+        }
+    }
+}
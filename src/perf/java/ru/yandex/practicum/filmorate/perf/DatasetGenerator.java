@@ -0,0 +1,241 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+
+// Заполняет схему H2 перекошенными данными, как в проде:
+//   лайки по Zipf — немногие фильмы собирают большую часть лайков;
+//   друзья по степенному закону — у большинства несколько друзей, у немногих сотни, и дружат чаще с «хабами»;
+//   у каждого фильма 1–6 жанров в films_genre и рейтинг в films_rating.
+// Пишет прямо в таблицы пакетами, минуя DAO, иначе миллион лайков заливался бы часами.
+// Запуск: mvn -Pperf test-compile exec:exec -Dperf.main=ru.yandex.practicum.filmorate.perf.DatasetGenerator
+//         -Dperf.args="--url=jdbc:h2:file:./db/filmorate --users=10000 --films=20000 --likes=1000000"
+public final class DatasetGenerator {
+    private static final int BATCH = 5_000;
+    private static final int GENRES = 6;
+    private static final int RATINGS = 5;
+    private static final int UNCONFIRMED = 1;
+    private static final int CONFIRMED = 2;
+
+    private final JdbcTemplate jdbc;
+    private final Options options;
+    private final Random random;
+
+    public DatasetGenerator(DataSource dataSource, Options options) {
+        this.jdbc = new JdbcTemplate(dataSource);
+        this.options = options;
+        this.random = new Random(options.seed);
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> parsed = parseArgs(args);
+        Options options = Options.from(parsed);
+        DataSource dataSource = new DriverManagerDataSource(
+                parsed.getOrDefault("url", "jdbc:h2:file:./db/filmorate"), "sa", "password");
+        long started = System.nanoTime();
+        new DatasetGenerator(dataSource, options).generate();
+        System.out.printf("Готово за %d мс: %s%n", (System.nanoTime() - started) / 1_000_000, options);
+    }
+
+    public void generate() {
+        prepareSchema();
+        long firstUser = nextId("users");
+        long firstFilm = nextId("films");
+        insertUsers(firstUser);
+        insertFilms(firstFilm);
+        insertLikes(firstFilm, firstUser);
+        insertFriends(firstUser);
+    }
+
+    private void prepareSchema() {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("schema.sql"));
+        populator.execute(jdbc.getDataSource());
+        Integer ratings = jdbc.queryForObject("SELECT COUNT(*) FROM rating", Integer.class);
+        if (ratings == null || ratings == 0) {
+            new ResourceDatabasePopulator(new ClassPathResource("data.sql")).execute(jdbc.getDataSource());
+        }
+    }
+
+    // Вставляем с явными id, чтобы не читать сгенерированные ключи; счётчик identity потом сдвигаем вперёд
+    private long nextId(String table) {
+        Long max = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        return (max == null ? 0 : max) + 1;
+    }
+
+    private void insertUsers(long firstId) {
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        for (int i = 0; i < options.users; i++) {
+            long id = firstId + i;
+            rows.add(new Object[]{id, "user" + id + "@yandex.com", "user" + id, "Пользователь " + id,
+                    Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(20_000)))});
+            flushIfFull("INSERT INTO users (id, email, login, name, birthday) VALUES (?,?,?,?,?)", rows);
+        }
+        flush("INSERT INTO users (id, email, login, name, birthday) VALUES (?,?,?,?,?)", rows);
+        jdbc.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + (firstId + options.users));
+    }
+
+    private void insertFilms(long firstId) {
+        List<Object[]> films = new ArrayList<>(BATCH);
+        List<Object[]> genres = new ArrayList<>(BATCH);
+        List<Object[]> ratings = new ArrayList<>(BATCH);
+        List<Long> genreIds = new ArrayList<>();
+        for (long g = 1; g <= GENRES; g++) {
+            genreIds.add(g);
+        }
+        for (int i = 0; i < options.films; i++) {
+            long id = firstId + i;
+            films.add(new Object[]{id, "Фильм " + id, "Описание фильма " + id,
+                    Date.valueOf(LocalDate.of(1930, 1, 1).plusDays(random.nextInt(34_000))), 60 + random.nextInt(150)});
+            ratings.add(new Object[]{id, 1 + random.nextInt(RATINGS)});
+            Collections.shuffle(genreIds, random);
+            for (Long genreId : genreIds.subList(0, 1 + random.nextInt(GENRES))) {
+                genres.add(new Object[]{id, genreId});
+            }
+            if (films.size() >= BATCH) {
+                // Связи ссылаются на фильмы, поэтому фильмы уходят первыми
+                flush("INSERT INTO films (id, name, description, releaseDate, duration) VALUES (?,?,?,?,?)", films);
+                flush("INSERT INTO films_rating (films_id, rating_id) VALUES (?,?)", ratings);
+                flush("INSERT INTO films_genre (films_id, genre_id) VALUES (?,?)", genres);
+            }
+        }
+        flush("INSERT INTO films (id, name, description, releaseDate, duration) VALUES (?,?,?,?,?)", films);
+        flush("INSERT INTO films_rating (films_id, rating_id) VALUES (?,?)", ratings);
+        flush("INSERT INTO films_genre (films_id, genre_id) VALUES (?,?)", genres);
+        jdbc.execute("ALTER TABLE films ALTER COLUMN id RESTART WITH " + (firstId + options.films));
+    }
+
+    // Фильм выбирается по Zipf, юзер равномерно; повторная пара просто пропускается
+    private void insertLikes(long firstFilm, long firstUser) {
+        if (options.films == 0 || options.users == 0) {
+            return;
+        }
+        long likes = Math.min(options.likes, (long) options.films * options.users);
+        ZipfSampler films = new ZipfSampler(options.films, options.exponent);
+        int[] filmByRank = permutation(options.films);
+        long[] likeCounts = new long[options.films];
+        LongHashSet seen = new LongHashSet();
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        long attempts = 0;
+        // На очень перекошенном распределении хвост почти не выпадает — не крутимся вечно
+        while (seen.size() < likes && attempts++ < likes * 20) {
+            int film = filmByRank[films.next(random)];
+            int user = random.nextInt(options.users);
+            if (!seen.add((long) film * options.users + user)) {
+                continue;
+            }
+            likeCounts[film]++;
+            rows.add(new Object[]{firstFilm + film, firstUser + user});
+            flushIfFull("INSERT INTO films_likes (films_id, users_id) VALUES (?,?)", rows);
+        }
+        flush("INSERT INTO films_likes (films_id, users_id) VALUES (?,?)", rows);
+        for (int film = 0; film < options.films; film++) {
+            if (likeCounts[film] > 0) {
+                rows.add(new Object[]{likeCounts[film], firstFilm + film});
+                flushIfFull("UPDATE films SET like_count = like_count + ? WHERE id = ?", rows);
+            }
+        }
+        flush("UPDATE films SET like_count = like_count + ? WHERE id = ?", rows);
+    }
+
+    // Число друзей и выбор друга — оба по Zipf: степени распределены по степенному закону, популярные юзеры — хабы.
+    // Встречная заявка подтверждает дружбу, как это делает UserDbStorage.createFriendship
+    private void insertFriends(long firstUser) {
+        if (options.users < 2 || options.maxFriends == 0) {
+            return;
+        }
+        ZipfSampler degrees = new ZipfSampler(Math.min(options.maxFriends, options.users - 1), options.exponent);
+        ZipfSampler targets = new ZipfSampler(options.users, options.exponent);
+        int[] userByRank = permutation(options.users);
+        // Ключ — пара (добавивший, добавленный), значение — статус строки friends
+        Map<Long, Integer> friendships = new HashMap<>();
+        for (int user = 0; user < options.users; user++) {
+            int degree = degrees.next(random) + 1;
+            for (int k = 0, attempts = 0; k < degree && attempts < degree * 20; attempts++) {
+                int friend = userByRank[targets.next(random)];
+                if (friend == user || friendships.containsKey(pair(user, friend))) {
+                    continue;
+                }
+                long reverse = pair(friend, user);
+                if (friendships.containsKey(reverse)) {
+                    friendships.put(reverse, CONFIRMED);
+                } else {
+                    friendships.put(pair(user, friend), UNCONFIRMED);
+                }
+                k++;
+            }
+        }
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        for (Map.Entry<Long, Integer> friendship : friendships.entrySet()) {
+            long user = friendship.getKey() / options.users;
+            long friend = friendship.getKey() % options.users;
+            // Юзер, добавивший друга, в таблице записан получателем: друзья юзера — отправители заявок к нему
+            rows.add(new Object[]{firstUser + friend, firstUser + user, friendship.getValue()});
+            flushIfFull("INSERT INTO friends (senderUser_id, receiverUser_id, status) VALUES (?,?,?)", rows);
+        }
+        flush("INSERT INTO friends (senderUser_id, receiverUser_id, status) VALUES (?,?,?)", rows);
+    }
+
+    private long pair(int user, int friend) {
+        return (long) user * options.users + friend;
+    }
+
+    // Ранг популярности не должен совпадать с id, иначе самые популярные всегда первые в таблице
+    private int[] permutation(int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
+    }
+
+    private void flushIfFull(String sql, List<Object[]> rows) {
+        if (rows.size() >= BATCH) {
+            flush(sql, rows);
+        }
+    }
+
+    private void flush(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> parsed = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Ожидается --ключ=значение: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            parsed.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return parsed;
+    }
+
+    public record Options(int users, int films, long likes, int maxFriends, double exponent, long seed) {
+        public static Options from(Map<String, String> args) {
+            return new Options(
+                    Integer.parseInt(args.getOrDefault("users", "10000")),
+                    Integer.parseInt(args.getOrDefault("films", "10000")),
+                    Long.parseLong(args.getOrDefault("likes", "1000000")),
+                    Integer.parseInt(args.getOrDefault("max-friends", "500")),
+                    Double.parseDouble(args.getOrDefault("zipf", "1.1")),
+                    Long.parseLong(args.getOrDefault("seed", "42")));
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.yandex.practicum.filmorate.dao.FilmHydrator;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Чтения фильмов на базе и в памяти. cache=true ставит перед хранилищем CachedFilmStorage, как в приложении
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilmStorageBenchmark {
+    @Param({Backend.DB, Backend.IN_MEMORY})
+    public String backend;
+
+    @Param({"1000", "10000", "100000"})
+    public int films;
+
+    @Param("1000")
+    public int users;
+
+    @Param("10")
+    public int likesPerFilm;
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    // Для базы: BATCH, SEQUENTIAL или PARALLEL, см. FilmHydrator
+    @Param("BATCH")
+    public FilmHydrator.Mode hydration;
+
+    private Backend storages;
+    private Dataset dataset;
+    private FilmStorage filmStorage;
+    private FilmService filmService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storages = Backend.create(backend, hydration);
+        dataset = Dataset.fill(storages, users, films, likesPerFilm, 0);
+        filmStorage = storages.cached(cache);
+        filmService = new FilmService(filmStorage, storages.users, storages.ratings, storages.genres, 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storages.close();
+    }
+
+    @Benchmark
+    public void getAllFilms(Blackhole blackhole) {
+        blackhole.consume(filmStorage.getAllFilms());
+    }
+
+    @Benchmark
+    public void getFilmById(Blackhole blackhole) {
+        Long id = dataset.filmIds.get(ThreadLocalRandom.current().nextInt(dataset.filmIds.size()));
+        blackhole.consume(filmStorage.getFilmById(id));
+    }
+
+    @Benchmark
+    public void listFirstCountFilm(Blackhole blackhole) {
+        blackhole.consume(filmService.listFirstCountFilm(10));
+    }
+}
@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.openjdk.jmh.annotations.*;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Память множества лайков: запускать с -prof gc, gc.alloc.rate.norm покажет байты на одно множество.
+// Сравнивает LongHashSet с прежним HashSet<Long>
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LikeSetBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int likes;
+
+    @Benchmark
+    public LongHashSet longHashSet() {
+        LongHashSet set = new LongHashSet();
+        for (long id = 1; id <= likes; id++) {
+            set.add(id * 7);
+        }
+        return set;
+    }
+
+    @Benchmark
+    public Set<Long> boxedHashSet() {
+        Set<Long> set = new HashSet<>();
+        for (long id = 1; id <= likes; id++) {
+            set.add(id * 7);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,258 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Поднимает приложение на случайном порту поверх H2 в памяти, заливает туда DatasetGenerator
+// и гоняет заданную смесь запросов к FilmController/UserController, а в конце печатает p50/p99 и RPS по каждому.
+// Всё в одном процессе и без сети наружу. Запуск:
+//   mvn -Pperf test-compile exec:exec -Dperf.main=ru.yandex.practicum.filmorate.perf.LoadDriver
+//       -Dperf.args="--threads=32 --duration=60 --mix=film:40,popular:20,films:5,friends:15,common:10,like:10"
+// Ключи spring.*, server.*, filmorate.* уходят в приложение, например --spring.datasource.hikari.maximum-pool-size=20
+public final class LoadDriver {
+    private static final String DEFAULT_MIX = "film:35,popular:20,films:5,users:5,user:10,friends:10,common:10,like:5";
+
+    private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String base;
+    private final int users;
+    private final int films;
+    private final ZipfSampler filmPopularity;
+    private final ZipfSampler userPopularity;
+
+    private LoadDriver(String base, int users, int films, double exponent) {
+        this.base = base;
+        this.users = users;
+        this.films = films;
+        this.filmPopularity = new ZipfSampler(films, exponent);
+        this.userPopularity = new ZipfSampler(users, exponent);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> parsed = DatasetGenerator.parseArgs(args);
+        DatasetGenerator.Options dataset = DatasetGenerator.Options.from(parsed);
+        int threads = Integer.parseInt(parsed.getOrDefault("threads", "16"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(parsed.getOrDefault("warmup", "10")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(parsed.getOrDefault("duration", "30")));
+        List<Endpoint> mix = parseMix(parsed.getOrDefault("mix", DEFAULT_MIX));
+
+        String url = "jdbc:h2:mem:filmorate-load;DB_CLOSE_DELAY=-1";
+        System.out.printf("Генерация данных: %s%n", dataset);
+        new DatasetGenerator(new DriverManagerDataSource(url, "sa", "password"), dataset).generate();
+
+        List<String> appArgs = new ArrayList<>(List.of("--server.port=0", "--spring.datasource.url=" + url,
+                "--spring.sql.init.mode=never", "--logging.level.root=WARN"));
+        parsed.forEach((key, value) -> {
+            if (key.startsWith("spring.") || key.startsWith("server.") || key.startsWith("filmorate.")) {
+                appArgs.add("--" + key + "=" + value);
+            }
+        });
+        try (var context = SpringApplication.run(FilmorateApplication.class, appArgs.toArray(String[]::new))) {
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            LoadDriver driver = new LoadDriver("http://localhost:" + port, dataset.users(), dataset.films(),
+                    dataset.exponent());
+            System.out.printf("Прогрев %d с, %d потоков%n", warmup.toSeconds(), threads);
+            driver.run(mix, threads, warmup);
+            System.out.printf("Замер %d с%n", duration.toSeconds());
+            Map<Endpoint, Recorder> results = driver.run(mix, threads, duration);
+            print(results, duration);
+        }
+    }
+
+    private Map<Endpoint, Recorder> run(List<Endpoint> mix, int threads, Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Map<Endpoint, Recorder>>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> worker(mix, deadline, new Random(seed))));
+        }
+        Map<Endpoint, Recorder> merged = new EnumMap<>(Endpoint.class);
+        try {
+            for (Future<Map<Endpoint, Recorder>> future : futures) {
+                future.get().forEach((endpoint, recorder) ->
+                        merged.computeIfAbsent(endpoint, e -> new Recorder()).addAll(recorder));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return merged;
+    }
+
+    // У каждого потока свои счётчики, сливаем их в конце — замер не спорит за общие структуры
+    private Map<Endpoint, Recorder> worker(List<Endpoint> mix, long deadline, Random random) {
+        Map<Endpoint, Recorder> recorders = new EnumMap<>(Endpoint.class);
+        while (System.nanoTime() < deadline) {
+            Endpoint endpoint = mix.get(random.nextInt(mix.size()));
+            HttpRequest request = endpoint.request(this, random);
+            Recorder recorder = recorders.computeIfAbsent(endpoint, e -> new Recorder());
+            long started = System.nanoTime();
+            try {
+                HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                // 404 и 409 — нормальные ответы на случайные id и повторный лайк
+                recorder.record(System.nanoTime() - started, response.statusCode() < 500);
+            } catch (Exception e) {
+                recorder.record(System.nanoTime() - started, false);
+            }
+        }
+        return recorders;
+    }
+
+    private long film(Random random) {
+        return 1 + filmPopularity.next(random);
+    }
+
+    private long user(Random random) {
+        return 1 + userPopularity.next(random);
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+    }
+
+    // Вес задаётся повтором: film:35 кладёт film в список 35 раз
+    private static List<Endpoint> parseMix(String mix) {
+        List<Endpoint> result = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] nameAndWeight = part.trim().split(":");
+            Endpoint endpoint = Endpoint.byName(nameAndWeight[0]);
+            int weight = nameAndWeight.length > 1 ? Integer.parseInt(nameAndWeight[1]) : 1;
+            result.addAll(Collections.nCopies(weight, endpoint));
+        }
+        if (result.isEmpty()) {
+            throw new IllegalArgumentException("Пустая смесь запросов");
+        }
+        return result;
+    }
+
+    private static void print(Map<Endpoint, Recorder> results, Duration duration) {
+        System.out.printf("%-10s %-38s %10s %8s %10s %10s %10s%n",
+                "name", "request", "count", "errors", "rps", "p50, ms", "p99, ms");
+        long total = 0;
+        for (Map.Entry<Endpoint, Recorder> entry : results.entrySet()) {
+            Recorder recorder = entry.getValue();
+            total += recorder.count();
+            System.out.printf("%-10s %-38s %10d %8d %10.1f %10.2f %10.2f%n",
+                    entry.getKey().name, entry.getKey().description, recorder.count(), recorder.errors(),
+                    recorder.count() / (double) duration.toSeconds(),
+                    recorder.percentile(0.50) / 1e6, recorder.percentile(0.99) / 1e6);
+        }
+        System.out.printf("Всего %d запросов, %.1f в секунду%n", total, total / (double) duration.toSeconds());
+    }
+
+    private enum Endpoint {
+        FILMS("films", "GET /films") {
+            HttpRequest request(LoadDriver driver, Random random) {
+                return driver.get("/films");
+            }
+        },
+        FILM("film", "GET /films/{id}") {
+            HttpRequest request(LoadDriver driver, Random random) {
+                return driver.get("/films/" + driver.film(random));
+            }
+        },
+        POPULAR("popular", "GET /films/popular?count=10") {
+            HttpRequest request(LoadDriver driver, Random random) {
+                return driver.get("/films/popular?count=10");
+            }
+        },
+        LIKE("like", "PUT /films/{id}/like/{userId}") {
+            HttpRequest request(LoadDriver driver, Random random) {
+                return HttpRequest.newBuilder(URI.create(driver.base + "/films/" + driver.film(random)
+                                + "/like/" + (1 + random.nextInt(driver.users))))
+                        .header("Prefer", "return=minimal")
+                        .PUT(HttpRequest.BodyPublishers.noBody())
+                        .build();
+            }
+        },
+        USERS("users", "GET /users") {
+            HttpRequest request(LoadDriver driver, Random random) {
+                return driver.get("/users");
+            }
+        },
+        USER("user", "GET /users/{id}") {
+            HttpRequest request(LoadDriver driver, Random random) {
+                return driver.get("/users/" + driver.user(random));
+            }
+        },
+        FRIENDS("friends", "GET /users/{id}/friends") {
+            HttpRequest request(LoadDriver driver, Random random) {
+                return driver.get("/users/" + driver.user(random) + "/friends");
+            }
+        },
+        COMMON("common", "GET /users/{id}/friends/common/{otherId}") {
+            HttpRequest request(LoadDriver driver, Random random) {
+                return driver.get("/users/" + driver.user(random) + "/friends/common/" + driver.user(random));
+            }
+        };
+
+        final String name;
+        final String description;
+
+        Endpoint(String name, String description) {
+            this.name = name;
+            this.description = description;
+        }
+
+        abstract HttpRequest request(LoadDriver driver, Random random);
+
+        static Endpoint byName(String name) {
+            for (Endpoint endpoint : values()) {
+                if (endpoint.name.equals(name)) {
+                    return endpoint;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестный запрос в смеси: " + name);
+        }
+    }
+
+    // Все задержки целиком: за минуту прогона это единицы мегабайт, зато перцентили точные
+    private static final class Recorder {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int errors;
+
+        void record(long nanos, boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        void addAll(Recorder other) {
+            for (int i = 0; i < other.count; i++) {
+                record(other.latencies[i], true);
+            }
+            errors += other.errors;
+        }
+
+        int count() {
+            return count;
+        }
+
+        int errors() {
+            return errors;
+        }
+
+        double percentile(double p) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.min(count - 1, Math.ceil(p * count) - 1)];
+        }
+    }
+}
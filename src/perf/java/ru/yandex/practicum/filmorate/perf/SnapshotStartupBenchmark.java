@@ -0,0 +1,156 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Старт профиля in-memory со снимком против старта с пустыми хранилищами и заливки тех же данных через REST.
+// По умолчанию 10 000 фильмов по 100 лайков — миллион лайков
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotStartupBenchmark {
+    private static final int FILM_BATCH = 1_000;
+    private static final int LIKE_BATCH = 10_000;
+
+    @Param("10000")
+    public int users;
+
+    @Param("10000")
+    public int films;
+
+    @Param("100")
+    public int likesPerFilm;
+
+    @Param("10")
+    public int friendsPerUser;
+
+    private Path snapshot;
+    private List<String> userBodies;
+    private List<String> filmBatches;
+    private List<String> likeBatches;
+    private List<long[]> friendships;
+    private final HttpClient http = HttpClient.newHttpClient();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Backend source = Backend.create(Backend.IN_MEMORY);
+        Dataset.fill(source, users, films, likesPerFilm, friendsPerUser);
+        snapshot = Files.createTempFile("filmorate-snapshot", ".bin");
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        new InMemorySnapshotStore((InMemoryFilmStorage) source.films, (InMemoryUserStorage) source.users,
+                (InMemoryGenreStorage) source.genres, (InMemoryRatingStorage) source.ratings,
+                new CachedGenreStorage(source.genres, registry), new CachedRatingStorage(source.ratings, registry),
+                snapshot, Duration.ofHours(1)).save();
+        preparePayloads(source);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+    }
+
+    @Benchmark
+    public void restoreFromSnapshot() {
+        // Снимок читается в @PostConstruct, так что к возврату из run данные уже в хранилищах
+        start("--filmorate.snapshot.path=" + snapshot).close();
+    }
+
+    @Benchmark
+    public void reseedThroughRest() throws Exception {
+        try (ConfigurableApplicationContext context = start("--filmorate.snapshot.enabled=false")) {
+            String base = "http://localhost:" + ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            for (String body : userBodies) {
+                send(HttpRequest.newBuilder(URI.create(base + "/users")), "POST", body);
+            }
+            for (String body : filmBatches) {
+                send(HttpRequest.newBuilder(URI.create(base + "/films/batch")), "POST", body);
+            }
+            for (String body : likeBatches) {
+                send(HttpRequest.newBuilder(URI.create(base + "/films/likes/batch")), "POST", body);
+            }
+            for (long[] pair : friendships) {
+                send(HttpRequest.newBuilder(URI.create(base + "/users/" + pair[0] + "/friends/" + pair[1])), "PUT", "");
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext start(String snapshotArg) {
+        return SpringApplication.run(FilmorateApplication.class, "--spring.profiles.active=in-memory",
+                "--server.port=0", "--logging.level.root=WARN", snapshotArg);
+    }
+
+    private void send(HttpRequest.Builder request, String method, String body) throws Exception {
+        HttpResponse<Void> response = http.send(request
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(method + " " + response.uri() + " вернул " + response.statusCode());
+        }
+    }
+
+    // Тела запросов готовим заранее, чтобы замер не включал сериализацию набора данных
+    private void preparePayloads(Backend source) throws IOException {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        userBodies = new ArrayList<>();
+        friendships = new ArrayList<>();
+        for (User user : source.users.getAllUsers()) {
+            for (Long friendId : user.getFriends()) {
+                friendships.add(new long[]{user.getId(), friendId});
+            }
+            user.setId(null);
+            user.setFriends(null);
+            userBodies.add(mapper.writeValueAsString(user));
+        }
+        filmBatches = new ArrayList<>();
+        likeBatches = new ArrayList<>();
+        List<Film> filmBatch = new ArrayList<>();
+        List<LikeEvent> likeBatch = new ArrayList<>();
+        for (Film film : source.films.getAllFilms()) {
+            for (Long userId : film.getLikes()) {
+                likeBatch.add(new LikeEvent(film.getId(), userId, LikeEvent.Op.LIKE));
+                if (likeBatch.size() == LIKE_BATCH) {
+                    likeBatches.add(mapper.writeValueAsString(likeBatch));
+                    likeBatch.clear();
+                }
+            }
+            film.setId(null);
+            film.setLikes(null);
+            filmBatch.add(film);
+            if (filmBatch.size() == FILM_BATCH) {
+                filmBatches.add(mapper.writeValueAsString(filmBatch));
+                filmBatch.clear();
+            }
+        }
+        if (!filmBatch.isEmpty()) {
+            filmBatches.add(mapper.writeValueAsString(filmBatch));
+        }
+        if (!likeBatch.isEmpty()) {
+            likeBatches.add(mapper.writeValueAsString(likeBatch));
+        }
+    }
+}
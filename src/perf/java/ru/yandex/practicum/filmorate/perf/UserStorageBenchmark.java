@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserStorageBenchmark {
+    @Param({Backend.DB, Backend.IN_MEMORY})
+    public String backend;
+
+    @Param({"1000", "10000"})
+    public int users;
+
+    @Param("20")
+    public int friendsPerUser;
+
+    private Backend storages;
+    private Dataset dataset;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storages = Backend.create(backend);
+        dataset = Dataset.fill(storages, users, 0, 0, friendsPerUser);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storages.close();
+    }
+
+    @Benchmark
+    public void listOfCommonFriends(Blackhole blackhole) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long id = dataset.userIds.get(random.nextInt(dataset.userIds.size()));
+        Long otherId = dataset.userIds.get(random.nextInt(dataset.userIds.size()));
+        blackhole.consume(storages.users.listOfCommonFriends(id, otherId));
+    }
+
+    @Benchmark
+    public void getAllUsers(Blackhole blackhole) {
+        blackhole.consume(storages.users.getAllUsers());
+    }
+}
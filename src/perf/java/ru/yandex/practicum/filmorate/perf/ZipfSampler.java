@@ -0,0 +1,28 @@
+package ru.yandex.practicum.filmorate.perf;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Ранги 1..n с вероятностью ~ 1 / rank^exponent: несколько очень популярных значений и длинный хвост.
+// Накопленные вероятности считаются один раз, выборка — бинарный поиск
+public final class ZipfSampler {
+    private final double[] cumulative;
+
+    public ZipfSampler(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 1; rank <= n; rank++) {
+            sum += 1.0 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    // Индекс 0..n-1, где 0 — самый частый
+    public int next(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1);
+    }
+}
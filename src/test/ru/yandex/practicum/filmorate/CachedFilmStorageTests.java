@@ -0,0 +1,136 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.*;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+public class CachedFilmStorageTests {
+    InMemoryUserStorage userStorage;
+    InMemoryFilmStorage filmStorage;
+    SimpleMeterRegistry registry;
+    Long filmId;
+    Long userId;
+
+    @BeforeEach
+    void setUp() {
+        userStorage = new InMemoryUserStorage();
+        registry = new SimpleMeterRegistry();
+        userId = userStorage.createUser(user("first")).getId();
+    }
+
+    @Test
+    void servesRepeatedReadsFromCache() {
+        CachedFilmStorage cached = cached(true, new InMemoryFilmStorage(userStorage, new InMemoryGenreStorage(),
+                new InMemoryRatingStorage()));
+
+        cached.getFilmById(filmId);
+        cached.getFilmById(filmId);
+        cached.getFilmsByIds(List.of(filmId));
+
+        assertThat(gets("hit")).isEqualTo(2);
+        assertThat(gets("miss")).isEqualTo(1);
+        // Изменение в обход кэша не видно, пока запись не сброшена: значит, чтения действительно из памяти
+        filmStorage.userLikesFilm(filmId, userId);
+        assertThat(cached.getFilmById(filmId).getLikes()).isEmpty();
+    }
+
+    @Test
+    void callersCannotChangeCachedFilm() {
+        CachedFilmStorage cached = cached(true, new InMemoryFilmStorage(userStorage, new InMemoryGenreStorage(),
+                new InMemoryRatingStorage()));
+
+        Film loaded = cached.getFilmById(filmId);
+        loaded.getLikes().add(userId);
+        loaded.setName("changed");
+        Film hit = cached.getFilmById(filmId);
+        hit.getGenres().add(new Genre(1L, "Комедия"));
+        cached.getFilmsByIds(List.of(filmId)).iterator().next().setLikes(null);
+
+        Film again = cached.getFilmById(filmId);
+        assertThat(gets("hit")).isEqualTo(3);
+        assertThat(again.getName()).isEqualTo("film");
+        assertThat(again.getLikes()).isEmpty();
+        assertThat(again.getGenres()).isEmpty();
+    }
+
+    @Test
+    void updateAndLikesInvalidateEntry() {
+        CachedFilmStorage cached = cached(true, new InMemoryFilmStorage(userStorage, new InMemoryGenreStorage(),
+                new InMemoryRatingStorage()));
+        cached.getFilmById(filmId);
+
+        Film update = film("renamed");
+        update.setId(filmId);
+        cached.updateFilm(update);
+        assertThat(cached.getFilmById(filmId).getName()).isEqualTo("renamed");
+
+        cached.userLikesFilm(filmId, userId);
+        assertThat(cached.getFilmById(filmId).getLikes()).containsExactly(userId);
+        cached.deleteLikesFilm(filmId, userId);
+        assertThat(cached.getFilmById(filmId).getLikes()).isEmpty();
+
+        cached.addLike(filmId, userId);
+        assertThat(cached.getFilmById(filmId).getLikes()).containsExactly(userId);
+        cached.removeLike(filmId, userId);
+        assertThat(cached.getFilmById(filmId).getLikes()).isEmpty();
+    }
+
+    @Test
+    void disabledCacheReadsThrough() {
+        CachedFilmStorage cached = cached(false, new InMemoryFilmStorage(userStorage, new InMemoryGenreStorage(),
+                new InMemoryRatingStorage()));
+        cached.getFilmById(filmId);
+
+        filmStorage.userLikesFilm(filmId, userId);
+
+        assertThat(cached.getFilmById(filmId).getLikes()).containsExactly(userId);
+        assertThat(gets("hit") + gets("miss")).isZero();
+    }
+
+    @Test
+    void loadRacingWithUpdateIsNotCached() {
+        // Хранилище, которое отдаёт фильм, прочитанный до того, как его обновили через кэш:
+        // так выглядит читатель, между загрузкой и put которого успел пройти updateFilm
+        CachedFilmStorage[] cached = new CachedFilmStorage[1];
+        InMemoryFilmStorage racing = new InMemoryFilmStorage(userStorage, new InMemoryGenreStorage(),
+                new InMemoryRatingStorage()) {
+            boolean raced;
+
+            @Override
+            public Film getFilmById(Long id) {
+                Film loaded = super.getFilmById(id);
+                if (!raced) {
+                    raced = true;
+                    Film update = film("renamed");
+                    update.setId(id);
+                    cached[0].updateFilm(update);
+                }
+                return loaded;
+            }
+        };
+        cached[0] = cached(true, racing);
+
+        assertThat(cached[0].getFilmById(filmId).getName()).isEqualTo("film");
+        assertThat(cached[0].getFilmById(filmId).getName()).isEqualTo("renamed");
+    }
+
+    private CachedFilmStorage cached(boolean enabled, InMemoryFilmStorage storage) {
+        filmStorage = storage;
+        filmId = filmStorage.createFilm(film("film")).getId();
+        return new CachedFilmStorage(filmStorage, enabled, 100, Duration.ofMinutes(5), registry);
+    }
+
+    private double gets(String result) {
+        return registry.get("cache.gets").tag("cache", "films").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import ru.yandex.practicum.filmorate.controller.FilmController;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryGenreStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryRatingStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+public class FilmControllerTests {
+    FilmController controller;
+    Long filmId;
+    Long userId;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        InMemoryGenreStorage genres = new InMemoryGenreStorage();
+        InMemoryRatingStorage ratings = new InMemoryRatingStorage();
+        InMemoryFilmStorage films = new InMemoryFilmStorage(users, genres, ratings);
+        controller = new FilmController(new FilmService(films, users, ratings, genres, 1), new ObjectMapper());
+        filmId = films.createFilm(film("film")).getId();
+        userId = users.createUser(user("user")).getId();
+    }
+
+    @Test
+    void minimalResponseIsFoundAmongOtherPreferences() {
+        ResponseEntity<?> liked = controller.userLikesFilm(filmId, userId,
+                List.of("respond-async", " return=minimal; foo=bar"));
+        ResponseEntity<?> unliked = controller.deleteLikesFilm(filmId, userId, List.of("wait=5", "RETURN=MINIMAL"));
+
+        assertThat(liked.getBody()).isInstanceOf(LikeStatus.class);
+        assertThat(liked.getHeaders().getFirst("Preference-Applied")).isEqualTo("return=minimal");
+        assertThat(unliked.getBody()).isInstanceOf(LikeStatus.class);
+    }
+
+    @Test
+    void fullFilmWithoutMinimalPreference() {
+        ResponseEntity<?> liked = controller.userLikesFilm(filmId, userId, List.of("return=representation"));
+        ResponseEntity<?> unliked = controller.deleteLikesFilm(filmId, userId, null);
+
+        assertThat(liked.getBody()).isInstanceOf(Film.class);
+        assertThat(((Film) liked.getBody()).getLikes()).containsExactly(userId);
+        assertThat(liked.getHeaders().containsKey("Preference-Applied")).isFalse();
+        assertThat(unliked.getBody()).isInstanceOf(Film.class);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.FilmHydrator;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.RatingDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.dao.instrumentation.InstrumentedDataSource;
+import ru.yandex.practicum.filmorate.dao.instrumentation.QueryMetrics;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+// Внутри транзакции parallel работает как sequential, поэтому здесь тест без неё: данные коммитятся,
+// и потоки загрузки читают их через свои соединения. После теста всё созданное удаляется
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class FilmDaoParallelHydrationTests {
+    private static final int FILMS = 20;
+
+    @Autowired
+    DataSource dataSource;
+
+    QueryMetrics metrics;
+    FilmHydrator hydrator;
+    FilmDbStorage filmStorage;
+    UserDbStorage userStorage;
+    List<Long> filmIds = new ArrayList<>();
+    Long userId;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new QueryMetrics(new SimpleMeterRegistry());
+        JdbcTemplate jdbc = new JdbcTemplate(new InstrumentedDataSource(dataSource, () -> metrics));
+        hydrator = new FilmHydrator(FilmHydrator.Mode.PARALLEL, 4, Duration.ofSeconds(5));
+        userStorage = new UserDbStorage(jdbc);
+        filmStorage = new FilmDbStorage(jdbc, userStorage, new GenreDbStorage(jdbc), new RatingDbStorage(jdbc),
+                hydrator);
+        userId = userStorage.createUser(user("parallel")).getId();
+        for (int i = 0; i < FILMS; i++) {
+            Film film = film("parallel" + i, new LinkedHashSet<>(List.of(new Genre((long) i % 6 + 1, null))));
+            Long id = filmStorage.createFilm(film).getId();
+            filmIds.add(id);
+            if (i % 2 == 0) {
+                filmStorage.userLikesFilm(id, userId);
+            }
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        hydrator.close();
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        for (Long id : filmIds) {
+            jdbc.update("DELETE FROM films_likes WHERE films_id = ?", id);
+            jdbc.update("DELETE FROM films_genre WHERE films_id = ?", id);
+            jdbc.update("DELETE FROM films_rating WHERE films_id = ?", id);
+            jdbc.update("DELETE FROM films WHERE id = ?", id);
+        }
+        jdbc.update("DELETE FROM users WHERE id = ?", userId);
+    }
+
+    @Test
+    void loadsGenresAndLikesOnWorkerThreads() {
+        metrics.startCounting();
+        Collection<Film> films = filmStorage.getFilmsByIds(filmIds);
+        Map<String, Integer> counts = metrics.stopCounting();
+
+        assertThat(films).extracting(Film::getId).containsExactlyElementsOf(filmIds);
+        int i = 0;
+        for (Film film : films) {
+            assertThat(film.getGenres()).extracting(Genre::getId).containsExactly((long) i % 6 + 1);
+            if (i % 2 == 0) {
+                assertThat(film.getLikes()).containsExactly(userId);
+            } else {
+                assertThat(film.getLikes()).isEmpty();
+            }
+            i++;
+        }
+        // Запросы с потоков загрузки попали в счёт запроса, который их запустил
+        assertThat(counts).containsEntry("FilmDbStorage.GET_GENRES_BY_FILM_QUERY", FILMS)
+                .containsEntry("FilmDbStorage.GET_LIKES_BY_FILM_QUERY", FILMS);
+    }
+}
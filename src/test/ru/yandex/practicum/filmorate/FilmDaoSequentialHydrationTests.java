@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.FilmHydrator;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.RatingDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+
+import java.time.Duration;
+
+// Те же проверки, но списки собираются по запросу на фильм, а не двумя запросами на весь список
+@JdbcTest
+@AutoConfigureTestDatabase
+public class FilmDaoSequentialHydrationTests extends FilmStorageContractTests {
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Override
+    protected void createStorages() {
+        UserDbStorage userDbStorage = new UserDbStorage(jdbc);
+        userStorage = userDbStorage;
+        filmStorage = new FilmDbStorage(jdbc, userDbStorage, new GenreDbStorage(jdbc), new RatingDbStorage(jdbc),
+                new FilmHydrator(FilmHydrator.Mode.SEQUENTIAL, 1, Duration.ofSeconds(5)));
+    }
+}
@@ -1,99 +1,175 @@
 package ru.yandex.practicum.filmorate;
 
 import lombok.RequiredArgsConstructor;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.FilmHydrator;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.RatingDbStorage;
 import ru.yandex.practicum.filmorate.dao.UserDbStorage;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Rating;
-
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeEventResult;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 @JdbcTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor
-public class FilmDaoTests {
+public class FilmDaoTests extends FilmStorageContractTests {
     @Autowired
     JdbcTemplate jdbc;
-    FilmDbStorage filmDbStorage;
-    UserDbStorage userDbStorage;
-    Film film;
-
-    @BeforeEach
-    void setUp() {
-        filmDbStorage = new FilmDbStorage(jdbc, userDbStorage);
-        film = new Film();
-        film.setId(1L);
-        film.setName("example");
-        film.setDescription("example_description");
-        film.setReleaseDate(LocalDate.now().minusYears(50));
-        film.setDuration(150);
-        film.setLikes(new HashSet<>());
-        film.setGenres(new HashSet<>());
-        Rating rating = new Rating(4L, "R");
-        film.setMpa(rating);
+
+    @Override
+    protected void createStorages() {
+        UserDbStorage userDbStorage = new UserDbStorage(jdbc);
+        userStorage = userDbStorage;
+        filmStorage = new FilmDbStorage(jdbc, userDbStorage, new GenreDbStorage(jdbc), new RatingDbStorage(jdbc),
+                new FilmHydrator(FilmHydrator.Mode.BATCH, 1, Duration.ofSeconds(5)));
     }
 
     @Test
-    void findUserById() {
-        Film createdFilm = filmDbStorage.createFilm(film);
-
-        assertThat(createdFilm).isNotNull();
-        assertThat(createdFilm.getId()).isGreaterThan(0);
-
-        Film foundFilm = filmDbStorage.getFilmById(createdFilm.getId());
+    public void testLikeCountFollowsLikes() {
+        Long filmId = filmStorage.createFilm(film).getId();
+        Long first = createUser("first").getId();
+        Long second = createUser("second").getId();
+
+        filmStorage.userLikesFilm(filmId, first);
+        filmStorage.addLike(filmId, second);
+        assertThat(likeCount(filmId)).isEqualTo(2);
+
+        filmStorage.deleteLikesFilm(filmId, first);
+        // Снятие несуществующего лайка ничего не удаляет и счётчик не трогает
+        filmStorage.deleteLikesFilm(filmId, first);
+        filmStorage.removeLike(filmId, first);
+        assertThat(likeCount(filmId)).isEqualTo(1);
+
+        filmStorage.removeLike(filmId, second);
+        assertThat(likeCount(filmId)).isZero();
+    }
 
-        assertThat(foundFilm).isNotNull();
-        assertThat(foundFilm.getName()).isEqualTo(film.getName());
-        assertThat(foundFilm.getName()).isEqualTo(film.getName());
+    @Test
+    public void testV1BackfillCountsExistingLikesOnce() throws IOException {
+        Long liked = filmStorage.createFilm(film).getId();
+        film.setId(null);
+        Long notLiked = filmStorage.createFilm(film).getId();
+        Long first = createUser("first").getId();
+        Long second = createUser("second").getId();
+        // Лайки из базы до V1: в films_likes они есть, а like_count о них не знает
+        jdbc.update("INSERT INTO films_likes (films_id, users_id) VALUES (?, ?), (?, ?)", liked, first, liked, second);
+        jdbc.update("DELETE FROM schema_version WHERE version = 1");
+
+        runV1Migration();
+
+        assertThat(likeCount(liked)).isEqualTo(2);
+        assertThat(likeCount(notLiked)).isZero();
+
+        // Повторный старт не пересчитывает: версия уже записана
+        jdbc.update("UPDATE films SET like_count = 7 WHERE id = ?", liked);
+        runV1Migration();
+
+        assertThat(likeCount(liked)).isEqualTo(7);
     }
 
     @Test
-    public void testUpdateUser() {
-        Film createdFilm = filmDbStorage.createFilm(film);
+    public void testUnboundedSummaryPageAvoidsHugeInList() {
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(3L, null))));
+        List<Film> films = new ArrayList<>();
+        for (int i = 0; i < 1_001; i++) {
+            films.add(Film.builder()
+                    .name("film" + i)
+                    .description("description")
+                    .releaseDate(film.getReleaseDate())
+                    .duration(100)
+                    .mpa(film.getMpa())
+                    .genres(film.getGenres())
+                    .build());
+        }
+        List<Long> ids = filmStorage.createFilms(films);
+
+        Collection<Film> summary = filmStorage.getFilmsPage(0, Integer.MAX_VALUE, false);
+
+        assertThat(summary).extracting(Film::getId).containsExactlyElementsOf(ids);
+        assertThat(summary).allSatisfy(found -> {
+            assertThat(found.getGenres()).extracting(Genre::getId).containsExactly(3L);
+            assertThat(found.getLikes()).isNull();
+        });
+    }
 
-        Film updatedInfo = new Film();
-        updatedInfo.setId(film.getId());
-        updatedInfo.setName("changed");
-        updatedInfo.setDescription("changed_description");
-        updatedInfo.setDuration(138);
-        updatedInfo.setReleaseDate(LocalDate.now().minusYears(20).minusMonths(6));
-        filmDbStorage.updateFilm(updatedInfo);
+    @Test
+    public void testLikeBatchSkipsRowsChangedConcurrently() {
+        Long filmId = filmStorage.createFilm(film).getId();
+        Long liker = createUser("liker").getId();
+        Long unliker = createUser("unliker").getId();
+        jdbc.update("INSERT INTO films_likes (films_id, users_id) VALUES (?, ?)", filmId, unliker);
+        jdbc.update("UPDATE films SET like_count = 1 WHERE id = ?", filmId);
+        // Перед записью пакета другой запрос успевает поставить тот же лайк и снять тот же лайк
+        JdbcTemplate racing = new JdbcTemplate(jdbc.getDataSource()) {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                if (sql.startsWith("INSERT INTO films_likes")) {
+                    jdbc.update("INSERT INTO films_likes (films_id, users_id) VALUES (?, ?)", filmId, liker);
+                    jdbc.update("UPDATE films SET like_count = like_count + 1 WHERE id = ?", filmId);
+                } else if (sql.startsWith("DELETE FROM films_likes")) {
+                    jdbc.update("DELETE FROM films_likes WHERE films_id = ? AND users_id = ?", filmId, unliker);
+                    jdbc.update("UPDATE films SET like_count = like_count - 1 WHERE id = ?", filmId);
+                }
+                return super.batchUpdate(sql, batchArgs);
+            }
+        };
+        UserDbStorage racingUsers = new UserDbStorage(racing);
+        FilmDbStorage racingFilms = new FilmDbStorage(racing, racingUsers, new GenreDbStorage(racing),
+                new RatingDbStorage(racing), new FilmHydrator(FilmHydrator.Mode.BATCH, 1, Duration.ofSeconds(5)));
+
+        List<LikeEventResult> results = racingFilms.applyLikeEvents(List.of(
+                new LikeEvent(filmId, liker, LikeEvent.Op.LIKE),
+                new LikeEvent(filmId, unliker, LikeEvent.Op.UNLIKE)));
+
+        assertThat(results).extracting(LikeEventResult::getStatus).containsExactly(
+                LikeEventResult.Status.DUPLICATE,
+                LikeEventResult.Status.NOT_LIKED);
+        assertThat(likeCount(filmId)).isEqualTo(1);
+        assertThat(filmStorage.checkPopularity(false).isConsistent()).isTrue();
+    }
 
-        Film foundFilm = filmDbStorage.getFilmById(createdFilm.getId());
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@yandex.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.now().minusYears(15));
+        return userStorage.createUser(user);
+    }
 
-        assertThat(foundFilm.getName()).isEqualTo(updatedInfo.getName());
-        assertThat(foundFilm.getId()).isEqualTo(updatedInfo.getId());
+    private long likeCount(Long filmId) {
+        return jdbc.queryForObject("SELECT like_count FROM films WHERE id = ?", Long.class, filmId);
     }
 
-    @Test
-    public void testGetAllFilms() {
-        Film film2 = new Film();
-        film2.setId(1L);
-        film2.setName("example");
-        film2.setDescription("example_description");
-        film2.setReleaseDate(LocalDate.now().minusYears(10));
-        film2.setDuration(150);
-        film2.setLikes(new HashSet<>());
-        film2.setGenres(new HashSet<>());
-        Rating rating = new Rating(1L, "G");
-        film.setMpa(rating);
-
-        filmDbStorage.createFilm(film);
-        filmDbStorage.createFilm(film2);
-
-        Collection<Film> films = filmDbStorage.getAllFilms();
-
-        assertThat(films).isNotNull();
-        assertThat(films).hasSize(2);
+    // Выполняет из блока V1 в schema.sql только изменения данных: DDL в H2 коммитит транзакцию теста
+    private void runV1Migration() throws IOException {
+        String schema = new ClassPathResource("schema.sql").getContentAsString(StandardCharsets.UTF_8);
+        String v1 = schema.substring(schema.indexOf("-- V1"), schema.indexOf("-- V2"));
+        for (String statement : v1.replaceAll("(?m)^--.*$", "").split(";")) {
+            String sql = statement.trim();
+            if (sql.startsWith("UPDATE") || sql.startsWith("MERGE")) {
+                jdbc.update(sql);
+            }
+        }
     }
 }
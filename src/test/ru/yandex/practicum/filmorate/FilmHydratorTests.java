@@ -0,0 +1,135 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.dao.FilmHydrator;
+import ru.yandex.practicum.filmorate.exception.DatabaseException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FilmHydratorTests {
+    private static final int PARALLELISM = 4;
+
+    FilmHydrator hydrator = new FilmHydrator(FilmHydrator.Mode.PARALLEL, PARALLELISM, Duration.ofSeconds(5));
+
+    @AfterEach
+    void tearDown() {
+        hydrator.close();
+    }
+
+    @Test
+    void parallelModeKeepsOrderAndBoundsConcurrency() {
+        List<Film> films = films(100);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        hydrator.hydrate(films, film -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(5);
+            film.setDescription("loaded " + film.getId());
+            running.decrementAndGet();
+        });
+
+        assertThat(films).extracting(Film::getId).containsExactlyElementsOf(films(100).stream().map(Film::getId).toList());
+        assertThat(films).allSatisfy(film -> assertThat(film.getDescription()).isEqualTo("loaded " + film.getId()));
+        assertThat(maxRunning.get()).isBetween(2, PARALLELISM);
+    }
+
+    @Test
+    void concurrentCallsShareOneLimit() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Runnable hydrate = () -> hydrator.hydrate(films(40), film -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            sleep(5);
+            running.decrementAndGet();
+        });
+
+        Thread first = Thread.ofPlatform().start(hydrate);
+        Thread second = Thread.ofPlatform().start(hydrate);
+        first.join();
+        second.join();
+
+        assertThat(maxRunning.get()).isBetween(2, PARALLELISM);
+    }
+
+    @Test
+    void parallelismStaysBelowConnectionPool() {
+        FilmHydrator bounded = new FilmHydrator(FilmHydrator.Mode.PARALLEL, 8, Duration.ofSeconds(5), 3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try {
+            bounded.hydrate(films(40), film -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(5);
+                running.decrementAndGet();
+            });
+        } finally {
+            bounded.close();
+        }
+
+        assertThat(maxRunning.get()).isEqualTo(2);
+    }
+
+    @Test
+    void parallelModeFailsAfterDeadline() {
+        FilmHydrator slow = new FilmHydrator(FilmHydrator.Mode.PARALLEL, PARALLELISM, Duration.ofMillis(100));
+        try {
+            assertThatThrownBy(() -> slow.hydrate(films(20), film -> sleep(1_000)))
+                    .isInstanceOf(DatabaseException.class);
+        } finally {
+            slow.close();
+        }
+    }
+
+    @Test
+    void parallelModeRethrowsLoaderException() {
+        assertThatThrownBy(() -> hydrator.hydrate(films(10), film -> {
+            if (film.getId() == 7) {
+                throw new NotFoundException("Такого жанра нет!");
+            }
+        })).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void fallsBackToCallerThreadInsideTransaction() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            hydrator.hydrate(films(10), film -> threads.add(Thread.currentThread()));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        assertThat(threads).containsExactly(Thread.currentThread());
+    }
+
+    private static List<Film> films(int count) {
+        List<Film> films = new ArrayList<>();
+        for (long id = 1; id <= count; id++) {
+            Film film = new Film();
+            film.setId(id);
+            films.add(film);
+        }
+        return films;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
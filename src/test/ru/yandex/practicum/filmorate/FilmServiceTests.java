@@ -0,0 +1,31 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.TooManyRequestsException;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryGenreStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryRatingStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FilmServiceTests {
+    @Test
+    void limitsConcurrentExports() {
+        InMemoryUserStorage users = new InMemoryUserStorage();
+        InMemoryGenreStorage genres = new InMemoryGenreStorage();
+        InMemoryRatingStorage ratings = new InMemoryRatingStorage();
+        FilmService service = new FilmService(new InMemoryFilmStorage(users, genres, ratings), users, ratings,
+                genres, 1);
+
+        Runnable first = service.reserveExport();
+        assertThatThrownBy(service::reserveExport).isInstanceOf(TooManyRequestsException.class);
+
+        first.run();
+        // Повторное освобождение не добавляет лишнего места
+        first.run();
+        service.reserveExport();
+        assertThatThrownBy(service::reserveExport).isInstanceOf(TooManyRequestsException.class);
+    }
+}
@@ -0,0 +1,368 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.DuplicateException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeEventResult;
+import ru.yandex.practicum.filmorate.model.LikeStatus;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Общие проверки для всех реализаций FilmStorage: база и память должны вести себя одинаково
+// @Transactional с @JdbcTest наследника не действует на тесты, объявленные здесь: без своей аннотации
+// они коммитят данные в общую базу. Для хранилищ в памяти аннотация ни на что не влияет
+@Transactional
+public abstract class FilmStorageContractTests {
+    FilmStorage filmStorage;
+    UserStorage userStorage;
+    Film film;
+
+    protected abstract void createStorages();
+
+    @BeforeEach
+    void setUp() {
+        createStorages();
+        film = new Film();
+        film.setId(1L);
+        film.setName("example");
+        film.setDescription("example_description");
+        film.setReleaseDate(LocalDate.now().minusYears(50));
+        film.setDuration(150);
+        film.setLikes(new LongHashSet());
+        film.setGenres(new HashSet<>());
+        Rating rating = new Rating(4L, "R");
+        film.setMpa(rating);
+    }
+
+    @Test
+    void findUserById() {
+        Film createdFilm = filmStorage.createFilm(film);
+
+        assertThat(createdFilm).isNotNull();
+        assertThat(createdFilm.getId()).isGreaterThan(0);
+
+        Film foundFilm = filmStorage.getFilmById(createdFilm.getId());
+
+        assertThat(foundFilm).isNotNull();
+        assertThat(foundFilm.getName()).isEqualTo(film.getName());
+        assertThat(foundFilm.getName()).isEqualTo(film.getName());
+    }
+
+    @Test
+    public void testUpdateUser() {
+        Film createdFilm = filmStorage.createFilm(film);
+
+        Film updatedInfo = new Film();
+        updatedInfo.setId(film.getId());
+        updatedInfo.setName("changed");
+        updatedInfo.setDescription("changed_description");
+        updatedInfo.setDuration(138);
+        updatedInfo.setReleaseDate(LocalDate.now().minusYears(20).minusMonths(6));
+        filmStorage.updateFilm(updatedInfo);
+
+        Film foundFilm = filmStorage.getFilmById(createdFilm.getId());
+
+        assertThat(foundFilm.getName()).isEqualTo(updatedInfo.getName());
+        assertThat(foundFilm.getId()).isEqualTo(updatedInfo.getId());
+    }
+
+    @Test
+    public void testGetAllFilms() {
+        Film film2 = new Film();
+        film2.setId(1L);
+        film2.setName("example");
+        film2.setDescription("example_description");
+        film2.setReleaseDate(LocalDate.now().minusYears(10));
+        film2.setDuration(150);
+        film2.setLikes(new LongHashSet());
+        film2.setGenres(new HashSet<>());
+        Rating rating = new Rating(1L, "G");
+        film.setMpa(rating);
+
+        filmStorage.createFilm(film);
+        filmStorage.createFilm(film2);
+
+        Collection<Film> films = filmStorage.getAllFilms();
+
+        assertThat(films).isNotNull();
+        assertThat(films).hasSize(2);
+    }
+
+    @Test
+    public void testGetAllFilmsLoadsGenresAndLikes() {
+        User user = new User();
+        user.setEmail("example@yandex.com");
+        user.setLogin("example_login");
+        user.setName("example");
+        user.setBirthday(LocalDate.now().minusYears(15));
+        User createdUser = userStorage.createUser(user);
+
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(2L, "Драма"), new Genre(1L, "Комедия"))));
+        Film first = filmStorage.createFilm(film);
+        Film second = new Film();
+        second.setName("second");
+        second.setDescription("second_description");
+        second.setReleaseDate(LocalDate.now().minusYears(5));
+        second.setDuration(90);
+        second.setMpa(new Rating(1L, "G"));
+        second = filmStorage.createFilm(second);
+        filmStorage.userLikesFilm(second.getId(), createdUser.getId());
+
+        Collection<Film> films = filmStorage.getAllFilms();
+
+        assertThat(films).extracting(Film::getId).containsExactly(first.getId(), second.getId());
+        Film foundFirst = films.iterator().next();
+        assertThat(foundFirst.getGenres()).extracting(Genre::getId).containsExactly(1L, 2L);
+        assertThat(foundFirst.getLikes()).isEmpty();
+        assertThat(foundFirst.getMpa().getName()).isEqualTo("R");
+        Film foundSecond = films.stream().skip(1).findFirst().orElseThrow();
+        assertThat(foundSecond.getGenres()).isEmpty();
+        assertThat(foundSecond.getLikes()).containsExactly(createdUser.getId());
+    }
+
+    @Test
+    public void testForEachFilmMatchesGetAllFilms() {
+        User user = new User();
+        user.setEmail("example@yandex.com");
+        user.setLogin("example_login");
+        user.setName("example");
+        user.setBirthday(LocalDate.now().minusYears(15));
+        User createdUser = userStorage.createUser(user);
+
+        User otherUser = userStorage.createUser(TestData.user("other_login"));
+
+        // Фильм без жанров и лайков между двумя с ними: курсоры жанров и лайков не должны сбиться
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(3L, "Мультфильм"), new Genre(1L, "Комедия"))));
+        Film first = filmStorage.createFilm(film);
+        Film second = new Film();
+        second.setName("second");
+        second.setDescription("second_description");
+        second.setReleaseDate(LocalDate.now().minusYears(5));
+        second.setDuration(90);
+        second.setMpa(new Rating(1L, "G"));
+        second = filmStorage.createFilm(second);
+        Film third = filmStorage.createFilm(TestData.film("third",
+                new LinkedHashSet<>(List.of(new Genre(2L, "Драма")))));
+        filmStorage.userLikesFilm(first.getId(), createdUser.getId());
+        filmStorage.userLikesFilm(first.getId(), otherUser.getId());
+        filmStorage.userLikesFilm(third.getId(), otherUser.getId());
+
+        List<Film> exported = new ArrayList<>();
+        filmStorage.forEachFilm(exported::add);
+
+        assertThat(exported).extracting(Film::getId).containsExactly(first.getId(), second.getId(), third.getId());
+        assertThat(exported.get(0).getGenres()).extracting(Genre::getId).containsExactly(1L, 3L);
+        assertThat(exported.get(0).getLikes()).containsExactlyInAnyOrder(createdUser.getId(), otherUser.getId());
+        assertThat(exported.get(1).getGenres()).isEmpty();
+        assertThat(exported.get(1).getLikes()).isEmpty();
+        assertThat(exported.get(2).getGenres()).extracting(Genre::getId).containsExactly(2L);
+        assertThat(exported.get(2).getLikes()).containsExactly(otherUser.getId());
+        assertThat(exported).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(filmStorage.getAllFilms());
+    }
+
+    @Test
+    public void testCreateFilmsInBatch() {
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(1L, null), new Genre(2L, null))));
+        Film second = new Film();
+        second.setName("second");
+        second.setDescription("second_description");
+        second.setReleaseDate(LocalDate.now().minusYears(5));
+        second.setDuration(90);
+        second.setMpa(new Rating(1L, null));
+
+        List<Long> ids = filmStorage.createFilms(List.of(film, second));
+
+        assertThat(ids).hasSize(2);
+        Film foundFirst = filmStorage.getFilmById(ids.get(0));
+        assertThat(foundFirst.getName()).isEqualTo(film.getName());
+        assertThat(foundFirst.getGenres()).extracting(Genre::getId).containsExactly(1L, 2L);
+        assertThat(foundFirst.getMpa().getName()).isEqualTo("R");
+        Film foundSecond = filmStorage.getFilmById(ids.get(1));
+        assertThat(foundSecond.getName()).isEqualTo("second");
+        assertThat(foundSecond.getGenres()).isEmpty();
+        assertThat(foundSecond.getMpa().getName()).isEqualTo("G");
+    }
+
+    @Test
+    public void testApplyLikeEventsReportsPerItemStatus() {
+        User user = new User();
+        user.setEmail("example@yandex.com");
+        user.setLogin("example_login");
+        user.setName("example");
+        user.setBirthday(LocalDate.now().minusYears(15));
+        User createdUser = userStorage.createUser(user);
+        Film createdFilm = filmStorage.createFilm(film);
+        Long filmId = createdFilm.getId();
+        Long userId = createdUser.getId();
+
+        List<LikeEventResult> results = filmStorage.applyLikeEvents(List.of(
+                new LikeEvent(filmId, userId, LikeEvent.Op.LIKE),
+                new LikeEvent(filmId, userId, LikeEvent.Op.LIKE),
+                new LikeEvent(filmId + 100, userId, LikeEvent.Op.LIKE),
+                new LikeEvent(filmId, userId + 100, LikeEvent.Op.UNLIKE),
+                new LikeEvent(filmId, null, LikeEvent.Op.LIKE)));
+
+        assertThat(results).extracting(LikeEventResult::getStatus).containsExactly(
+                LikeEventResult.Status.APPLIED,
+                LikeEventResult.Status.DUPLICATE,
+                LikeEventResult.Status.FILM_NOT_FOUND,
+                LikeEventResult.Status.USER_NOT_FOUND,
+                LikeEventResult.Status.INVALID);
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).containsExactly(userId);
+        assertThat(filmStorage.checkPopularity(false).isConsistent()).isTrue();
+
+        results = filmStorage.applyLikeEvents(List.of(
+                new LikeEvent(filmId, userId, LikeEvent.Op.UNLIKE),
+                new LikeEvent(filmId, userId, LikeEvent.Op.UNLIKE)));
+
+        assertThat(results).extracting(LikeEventResult::getStatus).containsExactly(
+                LikeEventResult.Status.APPLIED,
+                LikeEventResult.Status.NOT_LIKED);
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).isEmpty();
+        assertThat(filmStorage.checkPopularity(false).isConsistent()).isTrue();
+    }
+
+    @Test
+    public void testAddAndRemoveLikeReturnStatus() {
+        User user = new User();
+        user.setEmail("example@yandex.com");
+        user.setLogin("example_login");
+        user.setName("example");
+        user.setBirthday(LocalDate.now().minusYears(15));
+        User createdUser = userStorage.createUser(user);
+        Film createdFilm = filmStorage.createFilm(film);
+
+        LikeStatus liked = filmStorage.addLike(createdFilm.getId(), createdUser.getId());
+
+        assertThat(liked.isLiked()).isTrue();
+        assertThat(liked.getLikeCount()).isEqualTo(1);
+        assertThatThrownBy(() -> filmStorage.addLike(createdFilm.getId(), createdUser.getId()))
+                .isInstanceOf(DuplicateException.class);
+        assertThatThrownBy(() -> filmStorage.addLike(createdFilm.getId() + 100, createdUser.getId()))
+                .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> filmStorage.addLike(createdFilm.getId(), createdUser.getId() + 100))
+                .isInstanceOf(NotFoundException.class);
+
+        LikeStatus unliked = filmStorage.removeLike(createdFilm.getId(), createdUser.getId());
+
+        assertThat(unliked.isLiked()).isFalse();
+        assertThat(unliked.getLikeCount()).isZero();
+        assertThat(filmStorage.removeLike(createdFilm.getId(), createdUser.getId()).getLikeCount()).isZero();
+        assertThatThrownBy(() -> filmStorage.removeLike(createdFilm.getId() + 100, createdUser.getId()))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    public void testLikeLookupsByPair() {
+        User createdUser = userStorage.createUser(TestData.user("example_login"));
+        Film liked = filmStorage.createFilm(film);
+        film.setId(null);
+        Film notLiked = filmStorage.createFilm(film);
+        filmStorage.addLike(liked.getId(), createdUser.getId());
+
+        assertThat(filmStorage.existsById(liked.getId())).isTrue();
+        assertThat(filmStorage.existsById(notLiked.getId() + 100)).isFalse();
+        assertThat(filmStorage.hasLike(liked.getId(), createdUser.getId())).isTrue();
+        assertThat(filmStorage.hasLike(notLiked.getId(), createdUser.getId())).isFalse();
+        assertThat(filmStorage.hasLike(notLiked.getId() + 100, createdUser.getId())).isFalse();
+        assertThat(filmStorage.getLikeCounts(List.of(liked.getId(), notLiked.getId(), notLiked.getId() + 100)))
+                .containsExactlyInAnyOrderEntriesOf(Map.of(liked.getId(), 1L, notLiked.getId(), 0L));
+    }
+
+    @Test
+    public void testTopPopularFollowsLikes() {
+        User user = new User();
+        user.setEmail("example@yandex.com");
+        user.setLogin("example_login");
+        user.setName("example");
+        user.setBirthday(LocalDate.now().minusYears(15));
+        User createdUser = userStorage.createUser(user);
+
+        Film first = filmStorage.createFilm(film);
+        film.setId(null);
+        Film second = filmStorage.createFilm(film);
+
+        assertThat(filmStorage.topPopular(2)).extracting(Film::getId)
+                .containsExactly(first.getId(), second.getId());
+
+        filmStorage.userLikesFilm(second.getId(), createdUser.getId());
+        assertThat(filmStorage.topPopular(1)).extracting(Film::getId).containsExactly(second.getId());
+
+        filmStorage.deleteLikesFilm(second.getId(), createdUser.getId());
+        assertThat(filmStorage.topPopular(1)).extracting(Film::getId).containsExactly(first.getId());
+        assertThat(filmStorage.checkPopularity(false).isConsistent()).isTrue();
+    }
+
+    @Test
+    public void testFilmsPageFollowsKeysetOrderAndBounds() {
+        User user = new User();
+        user.setEmail("example@yandex.com");
+        user.setLogin("example_login");
+        user.setName("example");
+        user.setBirthday(LocalDate.now().minusYears(15));
+        Long userId = userStorage.createUser(user).getId();
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(1L, "Комедия"))));
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            film.setId(null);
+            ids.add(filmStorage.createFilm(film).getId());
+        }
+        filmStorage.userLikesFilm(ids.get(1), userId);
+
+        assertThat(filmStorage.getFilmsPage(0, 2, true)).extracting(Film::getId)
+                .containsExactly(ids.get(0), ids.get(1));
+        assertThat(filmStorage.getFilmsPage(ids.get(1), 2, true)).extracting(Film::getId)
+                .containsExactly(ids.get(2), ids.get(3));
+        assertThat(filmStorage.getFilmsPage(ids.get(3), 2, true)).extracting(Film::getId)
+                .containsExactly(ids.get(4));
+        assertThat(filmStorage.getFilmsPage(ids.get(4), 2, true)).isEmpty();
+
+        Film liked = filmStorage.getFilmsPage(ids.get(0), 1, true).iterator().next();
+        assertThat(liked.getLikes()).containsExactly(userId);
+        assertThat(liked.getGenres()).extracting(Genre::getId).containsExactly(1L);
+    }
+
+    @Test
+    public void testSummaryPageSkipsLikesOnly() {
+        User user = new User();
+        user.setEmail("example@yandex.com");
+        user.setLogin("example_login");
+        user.setName("example");
+        user.setBirthday(LocalDate.now().minusYears(15));
+        Long userId = userStorage.createUser(user).getId();
+        film.setGenres(new LinkedHashSet<>(List.of(new Genre(2L, "Драма"))));
+        Long filmId = filmStorage.createFilm(film).getId();
+        filmStorage.userLikesFilm(filmId, userId);
+
+        Collection<Film> summary = filmStorage.getFilmsPage(0, Integer.MAX_VALUE, false);
+
+        assertThat(summary).singleElement().satisfies(found -> {
+            assertThat(found.getLikes()).isNull();
+            assertThat(found.getName()).isEqualTo(film.getName());
+            assertThat(found.getGenres()).extracting(Genre::getId).containsExactly(2L);
+            assertThat(found.getMpa().getName()).isEqualTo("R");
+        });
+        // Краткая проекция отдаёт копию: полные чтения по-прежнему видят лайки
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).containsExactly(userId);
+    }
+}
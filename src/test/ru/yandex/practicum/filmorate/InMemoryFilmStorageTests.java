@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryGenreStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryRatingStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InMemoryFilmStorageTests extends FilmStorageContractTests {
+    @Override
+    protected void createStorages() {
+        userStorage = new InMemoryUserStorage();
+        filmStorage = new InMemoryFilmStorage(userStorage, new InMemoryGenreStorage(), new InMemoryRatingStorage());
+    }
+
+    @Test
+    public void testPopularityIndexMatchesFullSort() {
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            User user = new User();
+            user.setEmail("user" + i + "@yandex.com");
+            user.setLogin("user" + i);
+            user.setBirthday(LocalDate.now().minusYears(20));
+            userIds.add(userStorage.createUser(user).getId());
+        }
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            film.setId(null);
+            filmIds.add(filmStorage.createFilm(film).getId());
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 2_000; i++) {
+            Long filmId = filmIds.get(random.nextInt(filmIds.size()));
+            Long userId = userIds.get(random.nextInt(userIds.size()));
+            if (filmStorage.getFilmById(filmId).getLikes().contains(userId)) {
+                filmStorage.deleteLikesFilm(filmId, userId);
+            } else {
+                filmStorage.userLikesFilm(filmId, userId);
+            }
+        }
+
+        List<Long> expected = filmStorage.getAllFilms().stream()
+                .sorted(Comparator.comparingInt((Film f) -> f.getLikes().size()).reversed()
+                        .thenComparing(Film::getId))
+                .limit(10)
+                .map(Film::getId)
+                .toList();
+
+        assertThat(filmStorage.topPopular(10)).extracting(Film::getId).containsExactlyElementsOf(expected);
+        assertThat(filmStorage.checkPopularity(false).isConsistent()).isTrue();
+    }
+}
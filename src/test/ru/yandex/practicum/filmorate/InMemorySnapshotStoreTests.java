@@ -0,0 +1,74 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+public class InMemorySnapshotStoreTests {
+    @TempDir
+    Path dir;
+
+    @Test
+    void restoresWhatWasSaved() {
+        Path file = dir.resolve("snapshot.bin");
+        Storages source = new Storages(file);
+        User first = source.users.createUser(user("first", LocalDate.of(1990, 1, 1)));
+        User second = source.users.createUser(user("second", null));
+        source.users.createFriendship(first.getId(), second.getId());
+        Film film = source.films.createFilm(film("Фильм", Set.of(new Genre(1L, "Комедия"), new Genre(4L, "Триллер"))));
+        Film other = source.films.createFilm(film("Другой", Set.of()));
+        source.films.userLikesFilm(film.getId(), first.getId());
+        source.films.userLikesFilm(film.getId(), second.getId());
+        source.films.userLikesFilm(other.getId(), second.getId());
+        source.snapshots.save();
+
+        Storages restored = new Storages(file);
+
+        assertThat(restored.snapshots.restore()).isTrue();
+        assertThat(restored.users.getAllUsers()).usingRecursiveComparison().isEqualTo(source.users.getAllUsers());
+        assertThat(restored.films.getAllFilms()).usingRecursiveComparison().isEqualTo(source.films.getAllFilms());
+        assertThat(restored.films.topPopular(10)).extracting(Film::getId).containsExactly(film.getId(), other.getId());
+        // Счётчики id продолжаются после восстановленных, а не с единицы
+        assertThat(restored.users.createUser(user("third", null)).getId()).isEqualTo(second.getId() + 1);
+    }
+
+    @Test
+    void ignoresFileThatIsNotSnapshot() throws Exception {
+        Path file = dir.resolve("snapshot.bin");
+        Files.writeString(file, "{\"films\": []}");
+        Storages storages = new Storages(file);
+        storages.users.createUser(user("kept", null));
+
+        assertThat(storages.snapshots.restore()).isFalse();
+        assertThat(storages.users.getAllUsers()).hasSize(1);
+    }
+
+    private static class Storages {
+        final InMemoryUserStorage users = new InMemoryUserStorage();
+        final InMemoryGenreStorage genres = new InMemoryGenreStorage();
+        final InMemoryRatingStorage ratings = new InMemoryRatingStorage();
+        final InMemoryFilmStorage films = new InMemoryFilmStorage(users, genres, ratings);
+        final InMemorySnapshotStore snapshots;
+
+        Storages(Path file) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            snapshots = new InMemorySnapshotStore(films, users, genres, ratings,
+                    new CachedGenreStorage(genres, registry), new CachedRatingStorage(ratings, registry),
+                    file, Duration.ofMinutes(1));
+        }
+    }
+}
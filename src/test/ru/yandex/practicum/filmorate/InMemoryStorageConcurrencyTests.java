@@ -0,0 +1,119 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryGenreStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryRatingStorage;
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+public class InMemoryStorageConcurrencyTests {
+    private static final int THREADS = 8;
+    private static final int USERS_PER_THREAD = 250;
+    private static final int FILMS = 20;
+
+    InMemoryUserStorage userStorage;
+    InMemoryFilmStorage filmStorage;
+
+    @BeforeEach
+    void setUp() {
+        userStorage = new InMemoryUserStorage();
+        filmStorage = new InMemoryFilmStorage(userStorage, new InMemoryGenreStorage(), new InMemoryRatingStorage());
+    }
+
+    @Test
+    void concurrentWritesKeepIdsUniqueAndLikesComplete() throws Exception {
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            filmIds.add(filmStorage.createFilm(film("film" + i)).getId());
+        }
+        User hub = userStorage.createUser(user("hub"));
+
+        List<Long> userIds = runConcurrently(thread -> {
+            List<Long> created = new ArrayList<>();
+            for (int i = 0; i < USERS_PER_THREAD; i++) {
+                User user = userStorage.createUser(user("user" + thread + "_" + i));
+                created.add(user.getId());
+                userStorage.createFriendship(hub.getId(), user.getId());
+                for (Long filmId : filmIds) {
+                    filmStorage.userLikesFilm(filmId, user.getId());
+                }
+                // Читатели не должны падать на ConcurrentModificationException посреди записи
+                filmStorage.topPopular(5);
+                userStorage.getUserById(hub.getId()).getFriends().size();
+            }
+            return created;
+        });
+
+        assertThat(Set.copyOf(userIds)).hasSize(THREADS * USERS_PER_THREAD);
+        assertThat(userStorage.getUserById(hub.getId()).getFriends()).containsExactlyInAnyOrderElementsOf(userIds);
+        for (Film film : filmStorage.getAllFilms()) {
+            assertThat(film.getLikes()).containsExactlyInAnyOrderElementsOf(userIds);
+        }
+    }
+
+    @Test
+    void concurrentLikeAndUnlikeOfSameFilmLeavesConsistentSet() throws Exception {
+        Long filmId = filmStorage.createFilm(film("hot")).getId();
+        List<Long> userIds = new ArrayList<>();
+        for (int i = 0; i < THREADS * USERS_PER_THREAD; i++) {
+            userIds.add(userStorage.createUser(user("user" + i)).getId());
+        }
+
+        // Каждый поток ставит лайки своим юзерам и снимает лайки у чётных
+        runConcurrently(thread -> {
+            List<Long> own = userIds.subList(thread * USERS_PER_THREAD, (thread + 1) * USERS_PER_THREAD);
+            for (Long userId : own) {
+                filmStorage.userLikesFilm(filmId, userId);
+            }
+            for (Long userId : own) {
+                if (userId % 2 == 0) {
+                    filmStorage.deleteLikesFilm(filmId, userId);
+                }
+            }
+            return List.of();
+        });
+
+        Set<Long> expected = userIds.stream().filter(id -> id % 2 != 0).collect(Collectors.toSet());
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    private List<Long> runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<Long>>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.run(thread);
+                }));
+            }
+            start.countDown();
+            List<Long> result = new ArrayList<>();
+            for (Future<List<Long>> future : futures) {
+                result.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ThreadTask {
+        List<Long> run(int thread) throws Exception;
+    }
+}
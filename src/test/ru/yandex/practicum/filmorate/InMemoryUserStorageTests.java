@@ -0,0 +1,11 @@
+package ru.yandex.practicum.filmorate;
+
+import ru.yandex.practicum.filmorate.storage.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+public class InMemoryUserStorageTests extends UserStorageContractTests {
+    @Override
+    protected UserStorage createStorage() {
+        return new InMemoryUserStorage();
+    }
+}
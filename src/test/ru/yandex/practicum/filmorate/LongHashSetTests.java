@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongHashSetTests {
+    @Test
+    void behavesLikeHashSetUnderRandomOperations() {
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            // Узкий диапазон, чтобы чаще попадать в уже занятые цепочки и проверять сдвиг при удалении
+            long key = random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertThat(set.remove(key)).isEqualTo(expected.remove(key));
+            } else {
+                assertThat(set.add(key)).isEqualTo(expected.add(key));
+            }
+        }
+        assertThat(set).hasSameSizeAs(expected).containsExactlyInAnyOrderElementsOf(expected);
+        for (long key = 0; key < 5_000; key++) {
+            assertThat(set.contains(key)).isEqualTo(expected.contains(key));
+        }
+    }
+
+    @Test
+    void retainAllKeepsOnlyCommonIds() {
+        LongHashSet set = new LongHashSet(Set.of(0L, 1L, 2L, 3L, 4L));
+
+        set.retainAll(Set.of(0L, 2L, 4L, 6L));
+
+        assertThat(set).containsExactlyInAnyOrder(0L, 2L, 4L);
+    }
+
+    @Test
+    void serializesAsSortedJsonArray() throws Exception {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        Film film = new Film();
+        film.setLikes(new LongHashSet(new TreeSet<>(Set.of(300_000L, 7L, 42L))));
+
+        String json = mapper.writeValueAsString(film);
+        Film parsed = mapper.readValue(json, Film.class);
+
+        assertThat(json).contains("\"likes\":[7,42,300000]");
+        assertThat(parsed.getLikes()).isInstanceOf(LongHashSet.class).containsExactlyInAnyOrder(7L, 42L, 300_000L);
+    }
+}
@@ -0,0 +1,61 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.LruCache;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LruCacheTests {
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void evictsLeastRecentlyUsedOverMaxSize() {
+        LruCache<Long, String> cache = new LruCache<>(2, Duration.ofMinutes(1), now::get);
+        cache.put(1L, "first");
+        cache.put(2L, "second");
+        // Чтение делает первую запись самой свежей, вытесняется вторая
+        assertThat(cache.get(1L)).isEqualTo("first");
+
+        cache.put(3L, "third");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.evictions()).isEqualTo(1);
+        assertThat(cache.get(2L)).isNull();
+        assertThat(cache.get(1L)).isEqualTo("first");
+        assertThat(cache.get(3L)).isEqualTo("third");
+    }
+
+    @Test
+    void expiresAfterTtl() {
+        LruCache<Long, String> cache = new LruCache<>(10, Duration.ofSeconds(5), now::get);
+        cache.put(1L, "first");
+
+        now.addAndGet(Duration.ofSeconds(5).toNanos());
+        assertThat(cache.get(1L)).isEqualTo("first");
+
+        now.incrementAndGet();
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void putIfUnchangedSkipsKeysTouchedSinceGeneration() {
+        LruCache<Long, String> cache = new LruCache<>(10, Duration.ofMinutes(1), now::get);
+        long beforeInvalidate = cache.generation(1L);
+        cache.invalidate(1L);
+
+        assertThat(cache.putIfUnchanged(1L, "stale", beforeInvalidate)).isFalse();
+        assertThat(cache.get(1L)).isNull();
+
+        long beforePut = cache.generation(1L);
+        cache.put(1L, "fresh");
+
+        assertThat(cache.putIfUnchanged(1L, "stale", beforePut)).isFalse();
+        assertThat(cache.get(1L)).isEqualTo("fresh");
+        assertThat(cache.putIfUnchanged(1L, "newer", cache.generation(1L))).isTrue();
+        assertThat(cache.get(1L)).isEqualTo("newer");
+    }
+}
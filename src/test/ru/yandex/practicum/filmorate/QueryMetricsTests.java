@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.RatingDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.dao.instrumentation.InstrumentedDataSource;
+import ru.yandex.practicum.filmorate.dao.instrumentation.QueryMetrics;
+import ru.yandex.practicum.filmorate.dao.instrumentation.QueryNames;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+public class QueryMetricsTests {
+    @Autowired
+    DataSource dataSource;
+
+    SimpleMeterRegistry registry;
+    QueryMetrics metrics;
+    JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new QueryMetrics(registry);
+        // Только чтение: обёртка берёт свои соединения мимо тестовой транзакции, запись бы не откатилась
+        jdbc = new JdbcTemplate(new InstrumentedDataSource(dataSource, () -> metrics));
+    }
+
+    @Test
+    void recordsLatencyAndRowsPerNamedQuery() {
+        new GenreDbStorage(jdbc).getAllGenres();
+        new RatingDbStorage(jdbc).getAllRatings();
+
+        Timer genres = registry.get("filmorate.jdbc.query").tag("query", "GenreDbStorage.GET_ALL_QUERY").timer();
+        DistributionSummary genreRows = registry.get("filmorate.jdbc.query.rows")
+                .tag("query", "GenreDbStorage.GET_ALL_QUERY").summary();
+        assertThat(genres.count()).isEqualTo(1);
+        assertThat(genreRows.totalAmount()).isEqualTo(6);
+        assertThat(registry.get("filmorate.jdbc.query").tag("query", "RatingDbStorage.GET_ALL_QUERY").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void countsQueriesOfCurrentRequestOnly() {
+        GenreDbStorage genreStorage = new GenreDbStorage(jdbc);
+        genreStorage.getAllGenres();
+
+        metrics.startCounting();
+        genreStorage.getAllGenres();
+        genreStorage.getGenreById(1L);
+        genreStorage.getGenreById(2L);
+        Map<String, Integer> counts = metrics.stopCounting();
+
+        assertThat(counts).containsExactlyInAnyOrderEntriesOf(Map.of(
+                "GenreDbStorage.GET_ALL_QUERY", 1,
+                "GenreDbStorage.GET_ID_QUERY", 2));
+        assertThat(metrics.stopCounting()).isEmpty();
+    }
+
+    @Test
+    void recognizesInListTemplatesOfAnyLength() {
+        QueryNames names = new QueryNames(FilmDbStorage.class, UserDbStorage.class);
+
+        assertThat(names.nameOf("SELECT id FROM films WHERE id IN (?,?,?)"))
+                .isEqualTo("FilmDbStorage.EXISTING_IDS_QUERY");
+        assertThat(names.nameOf("SELECT id FROM users WHERE id IN (?)"))
+                .isEqualTo("UserDbStorage.EXISTING_IDS_QUERY");
+        assertThat(names.nameOf("SELECT 1")).isEqualTo(QueryNames.OTHER);
+    }
+}
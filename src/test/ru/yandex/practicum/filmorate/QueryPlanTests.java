@@ -0,0 +1,79 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+public class QueryPlanTests {
+    private static final Pattern TABLE_SCAN = Pattern.compile("PUBLIC\\.(\\w+)\\.tableScan");
+    private static final Set<String> CHECKED_STATEMENTS = Set.of("SELECT", "UPDATE", "DELETE");
+    // Запросы, которые по смыслу читают таблицу целиком
+    private static final Map<String, Set<String>> ALLOWED_SCANS = Map.of(
+            "FilmDbStorage.GET_ALL_QUERY", Set.of("FILMS"),
+            "FilmDbStorage.GET_ALL_GENRES_QUERY", Set.of("FILMS_GENRE"),
+            "FilmDbStorage.GET_ALL_LIKES_QUERY", Set.of("FILMS_LIKES"),
+            "FilmDbStorage.COUNT_FILMS_QUERY", Set.of("FILMS"),
+            "FilmDbStorage.LIKE_COUNT_MISMATCH_QUERY", Set.of("FILMS"),
+            "FilmDbStorage.EXPORT_LIKES_QUERY", Set.of("FILMS_LIKES"),
+            "UserDbStorage.GET_ALL_QUERY", Set.of("USERS"),
+            "UserDbStorage.ALL_FRIENDS_QUERY", Set.of("FRIENDS")
+    );
+
+    @Autowired
+    JdbcTemplate jdbc;
+
+    @Test
+    void filmQueriesUseIndexes() throws IllegalAccessException {
+        assertNoUnexpectedScans(FilmDbStorage.class);
+    }
+
+    @Test
+    void userQueriesUseIndexes() throws IllegalAccessException {
+        assertNoUnexpectedScans(UserDbStorage.class);
+    }
+
+    private void assertNoUnexpectedScans(Class<?> dao) throws IllegalAccessException {
+        int checked = 0;
+        for (Field field : dao.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers()) || field.getType() != String.class
+                    || !field.getName().endsWith("_QUERY")) {
+                continue;
+            }
+            field.setAccessible(true);
+            // Списки IN (%s) проверяем на одном элементе
+            String sql = ((String) field.get(null)).replace("%s", "?");
+            if (!CHECKED_STATEMENTS.contains(sql.trim().split("\\s+")[0].toUpperCase())) {
+                continue;
+            }
+
+            Object[] args = new Object[(int) sql.chars().filter(c -> c == '?').count()];
+            String plan = String.join("\n", jdbc.queryForList("EXPLAIN " + sql, String.class, args));
+            Set<String> scanned = new TreeSet<>();
+            Matcher matcher = TABLE_SCAN.matcher(plan);
+            while (matcher.find()) {
+                scanned.add(matcher.group(1));
+            }
+
+            String name = dao.getSimpleName() + "." + field.getName();
+            assertThat(scanned)
+                    .as("%s перешёл на полный проход по таблице:%n%s", name, plan)
+                    .isSubsetOf(ALLOWED_SCANS.getOrDefault(name, Set.of()));
+            checked++;
+        }
+        assertThat(checked).isPositive();
+    }
+}
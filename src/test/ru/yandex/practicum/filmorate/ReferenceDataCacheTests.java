@@ -0,0 +1,177 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.dao.FilmDbStorage;
+import ru.yandex.practicum.filmorate.dao.FilmHydrator;
+import ru.yandex.practicum.filmorate.dao.GenreDbStorage;
+import ru.yandex.practicum.filmorate.dao.RatingDbStorage;
+import ru.yandex.practicum.filmorate.dao.UserDbStorage;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.storage.CachedGenreStorage;
+import ru.yandex.practicum.filmorate.storage.CachedRatingStorage;
+import ru.yandex.practicum.filmorate.storage.GenreStorage;
+import ru.yandex.practicum.filmorate.storage.RatingStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+public class ReferenceDataCacheTests {
+    @Autowired
+    JdbcTemplate jdbc;
+
+    SimpleMeterRegistry registry;
+    CountingGenreStorage genres;
+    CountingRatingStorage ratings;
+    CachedGenreStorage genreCache;
+    CachedRatingStorage ratingCache;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        genres = new CountingGenreStorage(new GenreDbStorage(jdbc));
+        ratings = new CountingRatingStorage(new RatingDbStorage(jdbc));
+        genreCache = new CachedGenreStorage(genres, registry);
+        ratingCache = new CachedRatingStorage(ratings, registry);
+        genreCache.load();
+        ratingCache.load();
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        assertThat(genreCache.getGenreById(1L).getName()).isEqualTo("Комедия");
+        assertThat(ratingCache.getRatingById(4L).getName()).isEqualTo("R");
+        assertThat(genres.byId.get()).isZero();
+
+        // Жанр добавлен в базу в обход кэша: первый раз промах и перечитывание, дальше попадание
+        jdbc.update("INSERT INTO genre (name) VALUES ('Вестерн')");
+        Long westernId = jdbc.queryForObject("SELECT id FROM genre WHERE name = 'Вестерн'", Long.class);
+        assertThat(genreCache.getGenreById(westernId).getName()).isEqualTo("Вестерн");
+        assertThat(genreCache.getGenreById(westernId).getName()).isEqualTo("Вестерн");
+
+        assertThat(gets("genres", "hit")).isEqualTo(2);
+        assertThat(gets("genres", "miss")).isEqualTo(1);
+        assertThat(gets("ratings", "hit")).isEqualTo(1);
+        assertThat(gets("ratings", "miss")).isZero();
+        assertThat(genres.byId.get()).isEqualTo(1);
+    }
+
+    @Test
+    void reloadsAfterCreate() {
+        int genreLoads = genres.all.get();
+        int ratingLoads = ratings.all.get();
+
+        Genre genre = genreCache.createGenre(new Genre(null, "Вестерн"));
+        Rating rating = ratingCache.createRating(new Rating(null, "TV-MA"));
+
+        assertThat(genres.all.get()).isEqualTo(genreLoads + 1);
+        assertThat(ratings.all.get()).isEqualTo(ratingLoads + 1);
+        assertThat(genreCache.getAllGenres()).extracting(Genre::getName).contains("Вестерн");
+        assertThat(ratingCache.getAllRatings()).extracting(Rating::getName).contains("TV-MA");
+        assertThat(genreCache.getGenreById(genre.getId()).getName()).isEqualTo("Вестерн");
+        assertThat(ratingCache.getRatingById(rating.getId()).getName()).isEqualTo("TV-MA");
+        assertThat(gets("genres", "miss")).isZero();
+        assertThat(gets("ratings", "miss")).isZero();
+    }
+
+    @Test
+    void filmReadsResolveNamesFromCache() {
+        FilmDbStorage films = new FilmDbStorage(jdbc, new UserDbStorage(jdbc), genreCache, ratingCache,
+                new FilmHydrator(FilmHydrator.Mode.BATCH, 1, Duration.ofSeconds(5)));
+        Film film = new Film();
+        film.setName("example");
+        film.setDescription("example_description");
+        film.setReleaseDate(LocalDate.now().minusYears(50));
+        film.setDuration(150);
+        film.setMpa(new Rating(4L, null));
+        film.setGenres(Set.of(new Genre(2L, null)));
+        Long id = films.createFilm(film).getId();
+
+        Film found = films.getFilmById(id);
+        Collection<Film> all = films.getAllFilms();
+
+        assertThat(found.getMpa().getName()).isEqualTo("R");
+        assertThat(found.getGenres()).extracting(Genre::getName).containsExactly("Драма");
+        assertThat(all).singleElement().satisfies(f -> {
+            assertThat(f.getMpa().getName()).isEqualTo("R");
+            assertThat(f.getGenres()).extracting(Genre::getName).containsExactly("Драма");
+        });
+        // Запросы фильмов берут из базы только id жанров и рейтинга, названия отдаёт кэш
+        assertThat(genres.byId.get()).isZero();
+        assertThat(ratings.byId.get()).isZero();
+        assertThat(gets("genres", "miss")).isZero();
+        assertThat(gets("ratings", "miss")).isZero();
+    }
+
+    private double gets(String cache, String result) {
+        return registry.get("cache.gets").tag("cache", cache).tag("result", result).counter().count();
+    }
+
+    private static class CountingGenreStorage implements GenreStorage {
+        final GenreStorage delegate;
+        final AtomicInteger byId = new AtomicInteger();
+        final AtomicInteger all = new AtomicInteger();
+
+        CountingGenreStorage(GenreStorage delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Genre createGenre(Genre genre) {
+            return delegate.createGenre(genre);
+        }
+
+        @Override
+        public Genre getGenreById(Long id) {
+            byId.incrementAndGet();
+            return delegate.getGenreById(id);
+        }
+
+        @Override
+        public Collection<Genre> getAllGenres() {
+            all.incrementAndGet();
+            return delegate.getAllGenres();
+        }
+    }
+
+    private static class CountingRatingStorage implements RatingStorage {
+        final RatingStorage delegate;
+        final AtomicInteger byId = new AtomicInteger();
+        final AtomicInteger all = new AtomicInteger();
+
+        CountingRatingStorage(RatingStorage delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Rating createRating(Rating rating) {
+            return delegate.createRating(rating);
+        }
+
+        @Override
+        public Rating getRatingById(Long id) {
+            byId.incrementAndGet();
+            return delegate.getRatingById(id);
+        }
+
+        @Override
+        public Collection<Rating> getAllRatings() {
+            all.incrementAndGet();
+            return delegate.getAllRatings();
+        }
+    }
+}
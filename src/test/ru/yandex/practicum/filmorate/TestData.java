@@ -0,0 +1,43 @@
+package ru.yandex.practicum.filmorate;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+// Заготовки фильмов и юзеров для тестов хранилищ в памяти
+final class TestData {
+    private TestData() {
+    }
+
+    static Film film(String name) {
+        return film(name, Set.of());
+    }
+
+    static Film film(String name, Set<Genre> genres) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("description");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(new Rating(1L, "G"));
+        film.setGenres(genres);
+        return film;
+    }
+
+    static User user(String login) {
+        return user(login, LocalDate.of(1990, 1, 1));
+    }
+
+    static User user(String login, LocalDate birthday) {
+        User user = new User();
+        user.setEmail(login + "@yandex.com");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(birthday);
+        return user;
+    }
+}
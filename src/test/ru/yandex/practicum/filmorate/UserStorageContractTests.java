@@ -0,0 +1,191 @@
+package ru.yandex.practicum.filmorate;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.LongHashSet;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.UserStorage;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Общие проверки для всех реализаций UserStorage: база и память должны вести себя одинаково
+// @Transactional с @JdbcTest наследника не действует на тесты, объявленные здесь: без своей аннотации
+// они коммитят данные в общую базу. Для хранилищ в памяти аннотация ни на что не влияет
+@Transactional
+public abstract class UserStorageContractTests {
+    UserStorage storage;
+    User user;
+
+    protected abstract UserStorage createStorage();
+
+    @BeforeEach
+    void setUp() {
+        storage = createStorage();
+        user = new User();
+        user.setId(1L);
+        user.setEmail("example@yandex.com");
+        user.setLogin("example_login");
+        user.setName("example");
+        user.setBirthday(LocalDate.now().minusYears(15));
+        user.setFriends(new LongHashSet());
+    }
+
+    @Test
+    void findUserById() {
+        User createdUser = storage.createUser(user);
+
+        assertThat(createdUser).isNotNull();
+        assertThat(createdUser.getId()).isGreaterThan(0);
+
+        User foundUser = storage.getUserById(createdUser.getId());
+
+        assertThat(foundUser).isNotNull();
+        assertThat(foundUser.getEmail()).isEqualTo(user.getEmail());
+        assertThat(foundUser.getLogin()).isEqualTo(user.getLogin());
+    }
+
+    @Test
+    public void testUpdateUser() {
+        User createdUser = storage.createUser(user);
+
+        User updatedInfo = new User();
+        updatedInfo.setId(user.getId());
+        updatedInfo.setEmail("changed@yandex.com");
+        updatedInfo.setLogin("changed_login");
+        updatedInfo.setName("Changed");
+        updatedInfo.setBirthday(LocalDate.now().minusYears(20));
+        storage.updateUser(updatedInfo);
+
+        User foundUser = storage.getUserById(createdUser.getId());
+
+        assertThat(foundUser.getEmail()).isEqualTo(updatedInfo.getEmail());
+        assertThat(foundUser.getLogin()).isEqualTo(updatedInfo.getLogin());
+        assertThat(foundUser.getName()).isEqualTo(updatedInfo.getName());
+    }
+
+    @Test
+    public void testGetAllUsers() {
+        User user2 = new User();
+        user2.setId(2L);
+        user2.setEmail("user2@yandex.com");
+        user2.setLogin("user2_login");
+        user2.setName("User2");
+        user2.setBirthday(LocalDate.now().minusYears(18));
+
+        storage.createUser(user);
+        storage.createUser(user2);
+
+        Collection<User> users = storage.getAllUsers();
+
+        assertThat(users).isNotNull();
+        assertThat(users).hasSize(2);
+    }
+
+    @Test
+    public void testListOfFriendsAndCommonFriends() {
+        User first = storage.createUser(user);
+        User second = storage.createUser(copyOf(user));
+        User common = storage.createUser(copyOf(user));
+
+        storage.createFriendship(first.getId(), second.getId());
+        storage.createFriendship(first.getId(), common.getId());
+        storage.createFriendship(second.getId(), common.getId());
+
+        assertThat(storage.listOfFriends(first.getId())).extracting(User::getId)
+                .containsExactly(second.getId(), common.getId());
+        Collection<User> commonFriends = storage.listOfCommonFriends(first.getId(), second.getId());
+        assertThat(commonFriends).extracting(User::getId).containsExactly(common.getId());
+        assertThat(commonFriends.iterator().next().getFriends()).isEqualTo(storage.getUserById(common.getId()).getFriends());
+    }
+
+    @Test
+    public void testExistenceChecks() {
+        User first = storage.createUser(user);
+        User second = storage.createUser(copyOf(user));
+        long missing = second.getId() + 100;
+
+        assertThat(storage.existsById(first.getId())).isTrue();
+        assertThat(storage.existsById(missing)).isFalse();
+        assertThat(storage.getExistingIds(List.of(first.getId(), missing, second.getId())))
+                .containsExactlyInAnyOrder(first.getId(), second.getId());
+        assertThat(storage.getExistingIds(List.of(missing))).isEmpty();
+        assertThat(storage.getExistingIds(List.of())).isEmpty();
+    }
+
+    @Test
+    public void testCreateFriendshipReturnsRequestingUser() {
+        User first = storage.createUser(user);
+        User second = storage.createUser(copyOf(user));
+
+        User result = storage.createFriendship(first.getId(), second.getId());
+
+        assertThat(result.getId()).isEqualTo(first.getId());
+        assertThat(result.getFriends()).containsExactly(second.getId());
+    }
+
+    @Test
+    public void testServiceChecksBothUsersBeforeFriendship() {
+        UserService service = new UserService(storage);
+        User first = storage.createUser(user);
+        User second = storage.createUser(copyOf(user));
+        long missing = second.getId() + 100;
+
+        assertThat(service.makeFriendship(first.getId(), second.getId()).getId()).isEqualTo(first.getId());
+        assertThatThrownBy(() -> service.makeFriendship(missing, second.getId()))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Такого юзера нет в списке!");
+        assertThatThrownBy(() -> service.makeFriendship(first.getId(), missing))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessage("Невозможно добавить в друзья несуществующего юзера!");
+        assertThatThrownBy(() -> service.listOfFriends(missing)).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> service.listOfCommonFriends(first.getId(), missing))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    public void testUsersPageFollowsKeysetOrderAndBounds() {
+        User first = storage.createUser(user);
+        User second = storage.createUser(copyOf(user));
+        User third = storage.createUser(copyOf(user));
+        storage.createFriendship(second.getId(), third.getId());
+
+        assertThat(storage.getUsersPage(0, 2, true)).extracting(User::getId)
+                .containsExactly(first.getId(), second.getId());
+        assertThat(storage.getUsersPage(second.getId(), 2, true)).extracting(User::getId)
+                .containsExactly(third.getId());
+        assertThat(storage.getUsersPage(third.getId(), 2, true)).isEmpty();
+        assertThat(storage.getUsersPage(first.getId(), 1, true).iterator().next().getFriends())
+                .containsExactly(third.getId());
+    }
+
+    @Test
+    public void testSummaryPageSkipsFriends() {
+        User first = storage.createUser(user);
+        User second = storage.createUser(copyOf(user));
+        storage.createFriendship(first.getId(), second.getId());
+
+        Collection<User> summary = storage.getUsersPage(0, Integer.MAX_VALUE, false);
+
+        assertThat(summary).extracting(User::getId).containsExactly(first.getId(), second.getId());
+        assertThat(summary).allSatisfy(found -> assertThat(found.getFriends()).isNull());
+        assertThat(summary.iterator().next().getLogin()).isEqualTo(user.getLogin());
+        assertThat(storage.getUserById(first.getId()).getFriends()).containsExactly(second.getId());
+    }
+
+    private User copyOf(User source) {
+        User copy = new User();
+        copy.setEmail(source.getEmail());
+        copy.setLogin(source.getLogin());
+        copy.setName(source.getName());
+        copy.setBirthday(source.getBirthday());
+        return copy;
+    }
+}
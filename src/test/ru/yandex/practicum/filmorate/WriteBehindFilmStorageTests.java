@@ -0,0 +1,262 @@
+package ru.yandex.practicum.filmorate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exception.DuplicateException;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.LikeEvent;
+import ru.yandex.practicum.filmorate.model.LikeEventResult;
+import ru.yandex.practicum.filmorate.storage.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static ru.yandex.practicum.filmorate.TestData.film;
+import static ru.yandex.practicum.filmorate.TestData.user;
+
+public class WriteBehindFilmStorageTests {
+    InMemoryUserStorage userStorage;
+    InMemoryFilmStorage filmStorage;
+    WriteBehindFilmStorage writeBehind;
+    Long filmId;
+    Long otherFilmId;
+    Long userId;
+    Long otherUserId;
+
+    @BeforeEach
+    void setUp() {
+        userStorage = new InMemoryUserStorage();
+        filmStorage = new InMemoryFilmStorage(userStorage, new InMemoryGenreStorage(), new InMemoryRatingStorage());
+        // Интервал больше теста: пишем только явным flush
+        writeBehind = writeBehind(100);
+        filmId = filmStorage.createFilm(film("first")).getId();
+        otherFilmId = filmStorage.createFilm(film("second")).getId();
+        userId = userStorage.createUser(user("first")).getId();
+        otherUserId = userStorage.createUser(user("second")).getId();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        writeBehind.close();
+    }
+
+    @Test
+    void pendingLikeIsVisibleBeforeFlushAndWrittenAfter() {
+        writeBehind.addLike(filmId, userId);
+
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).isEmpty();
+        assertThat(writeBehind.getFilmById(filmId).getLikes()).containsExactly(userId);
+
+        writeBehind.flush();
+
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).containsExactly(userId);
+        assertThat(writeBehind.getFilmById(filmId).getLikes()).containsExactly(userId);
+    }
+
+    @Test
+    void likeAndUnlikeOfSamePairCollapse() {
+        writeBehind.addLike(filmId, userId);
+        writeBehind.removeLike(filmId, userId);
+
+        assertThat(writeBehind.getFilmById(filmId).getLikes()).isEmpty();
+        writeBehind.flush();
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).isEmpty();
+    }
+
+    @Test
+    void duplicatePendingLikeIsRejected() {
+        writeBehind.addLike(filmId, userId);
+
+        assertThatThrownBy(() -> writeBehind.addLike(filmId, userId)).isInstanceOf(DuplicateException.class);
+        assertThatThrownBy(() -> writeBehind.addLike(filmId, 999L)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    void popularityCountsPendingLikes() {
+        filmStorage.userLikesFilm(filmId, userId);
+        writeBehind.addLike(otherFilmId, userId);
+        writeBehind.addLike(otherFilmId, otherUserId);
+
+        assertThat(writeBehind.topPopular(1)).extracting(Film::getId).containsExactly(otherFilmId);
+        assertThat(filmStorage.topPopular(1)).extracting(Film::getId).containsExactly(filmId);
+    }
+
+    @Test
+    void concurrentLikesOfSamePairSucceedOnce() throws InterruptedException {
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                    writeBehind.addLike(filmId, userId);
+                    succeeded.incrementAndGet();
+                } catch (DuplicateException e) {
+                    duplicates.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertThat(succeeded.get()).isEqualTo(1);
+        assertThat(duplicates.get()).isEqualTo(threads - 1);
+    }
+
+    @Test
+    void likeStatusCountsStoredAndPendingLikes() {
+        filmStorage.userLikesFilm(filmId, userId);
+
+        assertThat(writeBehind.addLike(filmId, otherUserId).getLikeCount()).isEqualTo(2);
+        assertThat(writeBehind.removeLike(filmId, userId).getLikeCount()).isEqualTo(1);
+        assertThat(writeBehind.hasLike(filmId, userId)).isFalse();
+        assertThat(writeBehind.hasLike(filmId, otherUserId)).isTrue();
+
+        writeBehind.flush();
+
+        assertThat(filmStorage.getLikeCounts(List.of(filmId))).containsEntry(filmId, 1L);
+        assertThat(writeBehind.addLike(filmId, userId).getLikeCount()).isEqualTo(2);
+    }
+
+    @Test
+    void popularityDropsFilmsLosingPendingLikes() {
+        Long thirdFilmId = filmStorage.createFilm(film("third")).getId();
+        filmStorage.userLikesFilm(filmId, userId);
+        filmStorage.userLikesFilm(filmId, otherUserId);
+        filmStorage.userLikesFilm(otherFilmId, userId);
+        writeBehind.removeLike(filmId, userId);
+        writeBehind.removeLike(filmId, otherUserId);
+        writeBehind.addLike(thirdFilmId, userId);
+
+        assertThat(writeBehind.topPopular(2)).extracting(Film::getId).containsExactly(otherFilmId, thirdFilmId);
+        assertThat(writeBehind.topPopular(3)).extracting(Film::getId)
+                .containsExactly(otherFilmId, thirdFilmId, filmId);
+    }
+
+    @Test
+    void fullQueueWritesThrough() throws InterruptedException {
+        writeBehind.close();
+        writeBehind = writeBehind(1);
+
+        writeBehind.addLike(filmId, userId);
+        writeBehind.addLike(filmId, otherUserId);
+
+        // Первый лайк ждёт в очереди, второй очередь не вместила — он уже в хранилище
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).containsExactly(otherUserId);
+        assertThat(writeBehind.getFilmById(filmId).getLikes()).containsExactlyInAnyOrder(userId, otherUserId);
+    }
+
+    @Test
+    void concurrentOverflowLikesOfSamePairSucceedOnce() throws InterruptedException {
+        writeBehind.close();
+        writeBehind = writeBehind(0);
+
+        assertThat(likeConcurrently(8)).isEqualTo(1);
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).containsExactly(userId);
+        assertThat(writeBehind.getLikeCounts(List.of(filmId))).containsEntry(filmId, 1L);
+    }
+
+    @Test
+    void fullBatchIsFlushedEarly() throws InterruptedException {
+        writeBehind.close();
+        writeBehind = writeBehind(100, 2);
+
+        writeBehind.addLike(filmId, userId);
+        writeBehind.addLike(filmId, otherUserId);
+        writeBehind.addLike(otherFilmId, userId);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (filmStorage.getFilmById(filmId).getLikes().size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).containsExactlyInAnyOrder(userId, otherUserId);
+    }
+
+    @Test
+    void likeCountsAreNotDoubledWhileBatchIsWritten() throws Exception {
+        List<CompletableFuture<Map<Long, Long>>> reads = new ArrayList<>();
+        filmStorage = new InMemoryFilmStorage(userStorage, new InMemoryGenreStorage(), new InMemoryRatingStorage()) {
+            @Override
+            public List<LikeEventResult> applyLikeEvents(List<LikeEvent> events) {
+                List<LikeEventResult> results = super.applyLikeEvents(events);
+                // Пакет уже в хранилище, но ещё не убран из ожидания: читаем из другого потока
+                reads.add(CompletableFuture.supplyAsync(() -> writeBehind.getLikeCounts(List.of(filmId))));
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return results;
+            }
+        };
+        filmId = filmStorage.createFilm(film("first")).getId();
+        writeBehind.close();
+        writeBehind = writeBehind(100);
+
+        writeBehind.addLike(filmId, userId);
+        writeBehind.flush();
+
+        assertThat(reads).hasSize(1);
+        assertThat(reads.get(0).get(5, TimeUnit.SECONDS)).containsEntry(filmId, 1L);
+    }
+
+    @Test
+    void closeFlushesPendingLikes() throws InterruptedException {
+        writeBehind.addLike(filmId, userId);
+
+        writeBehind.close();
+
+        assertThat(filmStorage.getFilmById(filmId).getLikes()).containsExactly(userId);
+    }
+
+    private int likeConcurrently(int threads) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger succeeded = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                    writeBehind.addLike(filmId, userId);
+                    succeeded.incrementAndGet();
+                } catch (DuplicateException ignored) {
+                    // Лайк уже поставлен другим потоком
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return succeeded.get();
+    }
+
+    private WriteBehindFilmStorage writeBehind(int capacity) {
+        return writeBehind(capacity, 100);
+    }
+
+    private WriteBehindFilmStorage writeBehind(int capacity, int batchSize) {
+        return new WriteBehindFilmStorage(filmStorage, userStorage, true, capacity, batchSize, Duration.ofHours(1),
+                new SimpleMeterRegistry());
+    }
+}